@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe cache holding a bounded number of values.
+ * <p>
+ * When the cache is full, an arbitrary entry is evicted to make room for a
+ * new one. This is good enough for caches of expensive, rarely changing
+ * objects, such as compiled stylesheets or JAXB contexts.
+ *
+ * @author Lukas Eder
+ */
+final class BoundedCache<K, V> {
+
+    private final int                 max;
+    private final ConcurrentMap<K, V> map;
+
+    BoundedCache(int max) {
+        this.max = max;
+        this.map = new ConcurrentHashMap<K, V>();
+    }
+
+    /**
+     * Get a cached value, or <code>null</code> if there is none
+     */
+    final V get(K key) {
+        return map.get(key);
+    }
+
+    /**
+     * Cache a value, unless another thread has cached one for the same key
+     * before. The value that ends up in the cache is returned.
+     */
+    final V put(K key, V value) {
+        if (map.size() >= max) {
+            Iterator<K> it = map.keySet().iterator();
+
+            if (it.hasNext()) {
+                map.remove(it.next());
+            }
+        }
+
+        V existing = map.putIfAbsent(key, value);
+        return existing != null ? existing : value;
+    }
+}
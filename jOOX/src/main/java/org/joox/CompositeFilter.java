@@ -0,0 +1,316 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import static org.joox.JOOX.all;
+import static org.joox.JOOX.none;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A combination of filters, created with {@link JOOX#and(Filter...)},
+ * {@link JOOX#or(Filter...)} and {@link JOOX#not(Filter)}.
+ * <p>
+ * Combinations are simplified when they are created. Nested combinations of
+ * the same kind are flattened, and the constant filters {@link JOOX#all()} and
+ * {@link JOOX#none()} are folded. If all combined filters are
+ * {@link FastFilter}s, the combination is a <code>FastFilter</code> as well.
+ * <p>
+ * While filtering, the cost and selectivity of the combined filters are
+ * sampled from time to time, and the filters are reordered such that cheap
+ * filters deciding the outcome are evaluated first. Filters are expected not
+ * to have any side-effects, as their evaluation order is not guaranteed.
+ *
+ * @author Lukas Eder
+ */
+class CompositeFilter implements Filter {
+
+    /**
+     * The number of evaluations that are measured per sample
+     */
+    private static final int  SAMPLE   = 256;
+
+    /**
+     * The number of evaluations after which filters are sampled again
+     */
+    private static final int  INTERVAL = 1 << 16;
+
+    private final boolean     and;
+    private volatile Filter[] filters;
+    private final long[]      costs;
+    private final int[]       calls;
+    private final int[]       hits;
+    private int               evaluations;
+
+    CompositeFilter(boolean and, Filter[] filters) {
+        this.and = and;
+        this.filters = filters;
+        this.costs = new long[filters.length];
+        this.calls = new int[filters.length];
+        this.hits = new int[filters.length];
+    }
+
+    // -------------------------------------------------------------------------
+    // Factories
+    // -------------------------------------------------------------------------
+
+    /**
+     * Combine filters with a logical AND
+     */
+    static Filter and(Filter... filters) {
+        return combine(true, filters);
+    }
+
+    /**
+     * Combine filters with a logical OR
+     */
+    static Filter or(Filter... filters) {
+        return combine(false, filters);
+    }
+
+    /**
+     * Inverse a filter
+     */
+    static Filter not(final Filter filter) {
+        if (filter == all()) {
+            return none();
+        }
+        else if (filter == none()) {
+            return all();
+        }
+        else if (filter instanceof Not) {
+            return ((Not) filter).filter;
+        }
+        else if (filter instanceof FastFilter) {
+            return new FastNot(filter);
+        }
+        else {
+            return new Not(filter);
+        }
+    }
+
+    private static Filter combine(boolean and, Filter... filters) {
+
+        // all() is neutral in conjunctions and absorbing in disjunctions, and
+        // vice versa for none()
+        Filter neutral = and ? all() : none();
+        Filter absorbing = and ? none() : all();
+
+        List<Filter> list = new ArrayList<Filter>();
+        boolean fast = true;
+
+        for (Filter filter : flatten(and, filters, new ArrayList<Filter>())) {
+            if (filter == absorbing) {
+                return absorbing;
+            }
+            else if (filter != neutral && !list.contains(filter)) {
+                list.add(filter);
+                fast &= filter instanceof FastFilter;
+            }
+        }
+
+        if (list.isEmpty()) {
+            return neutral;
+        }
+        else if (list.size() == 1) {
+            return list.get(0);
+        }
+
+        Filter[] array = list.toArray(new Filter[list.size()]);
+        return fast ? new FastCompositeFilter(and, array) : new CompositeFilter(and, array);
+    }
+
+    private static List<Filter> flatten(boolean and, Filter[] filters, List<Filter> result) {
+        for (Filter filter : filters) {
+            if (filter instanceof CompositeFilter && ((CompositeFilter) filter).and == and) {
+                flatten(and, ((CompositeFilter) filter).filters, result);
+            }
+            else {
+                result.add(filter);
+            }
+        }
+
+        return result;
+    }
+
+    // -------------------------------------------------------------------------
+    // Filter API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final boolean filter(Context context) {
+        Filter[] f = filters;
+
+        // Most evaluations are not measured
+        int evaluation = evaluations;
+        evaluations = (evaluation + 1) % INTERVAL;
+
+        if (evaluation >= SAMPLE) {
+            for (Filter filter : f) {
+                if (filter.filter(context) != and) {
+                    return !and;
+                }
+            }
+
+            return and;
+        }
+
+        try {
+            for (int i = 0; i < f.length; i++) {
+                long time = System.nanoTime();
+                boolean result = f[i].filter(context);
+
+                costs[i] += System.nanoTime() - time;
+                calls[i]++;
+
+                if (result) {
+                    hits[i]++;
+                }
+
+                if (result != and) {
+                    return !and;
+                }
+            }
+
+            return and;
+        }
+        finally {
+            if (evaluation == SAMPLE - 1) {
+                reorder(f);
+            }
+        }
+    }
+
+    /**
+     * Sort filters by their expected cost per decided outcome, and reset the
+     * measurements
+     */
+    private final synchronized void reorder(Filter[] f) {
+        final double[] ranks = new double[f.length];
+        Integer[] order = new Integer[f.length];
+
+        for (int i = 0; i < f.length; i++) {
+            order[i] = i;
+
+            // Filters that were never reached are kept at the end
+            if (calls[i] == 0) {
+                ranks[i] = Double.MAX_VALUE;
+            }
+            else {
+                double cost = (double) costs[i] / calls[i];
+                double decisive = (double) (and ? calls[i] - hits[i] : hits[i]) / calls[i];
+
+                ranks[i] = cost / Math.max(decisive, 0.001);
+            }
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(ranks[i1], ranks[i2]);
+            }
+        });
+
+        Filter[] result = new Filter[f.length];
+        for (int i = 0; i < f.length; i++) {
+            result[i] = f[order[i]];
+        }
+
+        Arrays.fill(costs, 0L);
+        Arrays.fill(calls, 0);
+        Arrays.fill(hits, 0);
+        filters = result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(and ? "and(" : "or(");
+        String separator = "";
+
+        for (Filter filter : filters) {
+            sb.append(separator).append(filter);
+            separator = ", ";
+        }
+
+        return sb.append(")").toString();
+    }
+
+    // -------------------------------------------------------------------------
+    // Fast and inverse filters
+    // -------------------------------------------------------------------------
+
+    /**
+     * A combination of {@link FastFilter}s
+     */
+    private static class FastCompositeFilter extends CompositeFilter implements FastFilter {
+        FastCompositeFilter(boolean and, Filter[] filters) {
+            super(and, filters);
+        }
+    }
+
+    /**
+     * An inverse filter
+     */
+    private static class Not implements Filter {
+        final Filter filter;
+
+        Not(Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public final boolean filter(Context context) {
+            return !filter.filter(context);
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + filter + ")";
+        }
+    }
+
+    /**
+     * An inverse {@link FastFilter}
+     */
+    private static class FastNot extends Not implements FastFilter {
+        FastNot(Filter filter) {
+            super(filter);
+        }
+    }
+}
@@ -0,0 +1,593 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of {@link Converter} instances, resolved once per target type.
+ * <p>
+ * Built-in converters are created lazily upon first lookup. Custom converters
+ * can be registered for any type, including types with built-in converters.
+ *
+ * @author Lukas Eder
+ * @see JOOX#convert(String, Class)
+ */
+final class ConverterRegistry {
+
+    /**
+     * The resolved converters
+     */
+    private static final ConcurrentMap<Class<?>, Converter<?>> CONVERTERS   = new ConcurrentHashMap<Class<?>, Converter<?>>();
+
+    /**
+     * String values that are converted to {@link Boolean#TRUE}
+     */
+    private static final String[]                             TRUE_VALUES  = { "1", "y", "yes", "true", "on", "enabled" };
+
+    /**
+     * String values that are converted to {@link Boolean#FALSE}
+     */
+    private static final String[]                             FALSE_VALUES = { "0", "n", "no", "false", "off", "disabled" };
+
+    /**
+     * Get a converter for a given type
+     */
+    @SuppressWarnings("unchecked")
+    static final <T> Converter<T> converter(Class<T> type) {
+        Converter<T> converter = (Converter<T>) CONVERTERS.get(type);
+
+        if (converter == null) {
+            converter = create(type);
+
+            Converter<T> existing = (Converter<T>) CONVERTERS.putIfAbsent(type, converter);
+            if (existing != null) {
+                converter = existing;
+            }
+        }
+
+        return converter;
+    }
+
+    /**
+     * Register a custom converter for a given type, or reset the type to its
+     * built-in converter if <code>converter</code> is <code>null</code>
+     */
+    static final <T> void register(Class<T> type, Converter<? extends T> converter) {
+        if (converter == null) {
+            CONVERTERS.remove(type);
+        }
+        else {
+            CONVERTERS.put(type, converter);
+        }
+    }
+
+    /**
+     * Whether a custom converter is registered for a type, instead of its
+     * built-in converter
+     */
+    private static final boolean isCustom(Class<?> type, Converter<?> builtIn) {
+        Converter<?> converter = CONVERTERS.get(type);
+        return converter != null && converter != builtIn;
+    }
+
+    /**
+     * Create a built-in converter for a given type
+     */
+    @SuppressWarnings("unchecked")
+    private static final <T> Converter<T> create(Class<T> type) {
+
+        // [#24] TODO: base64-decode binary data
+        // if (type == byte[].class) {
+        // }
+
+        // Primitive number arrays are parsed without intermediate strings,
+        // unless a custom converter is registered for their component type
+        if (type == int[].class) {
+            return (Converter<T>) INT_ARRAY;
+        }
+        else if (type == long[].class) {
+            return (Converter<T>) LONG_ARRAY;
+        }
+        else if (type == double[].class) {
+            return (Converter<T>) DOUBLE_ARRAY;
+        }
+
+        // [#28] Array conversion will recurse for split values
+        else if (type.isArray()) {
+            return (Converter<T>) new ArrayConverter(type.getComponentType());
+        }
+
+        // Strings are not converted. All types can be converted to Object
+        else if (type == String.class || type == Object.class) {
+            return (Converter<T>) STRING;
+        }
+
+        // Various number types
+        else if (type == Byte.class) {
+            return (Converter<T>) BYTE;
+        }
+        else if (type == byte.class) {
+            return (Converter<T>) BYTE_PRIMITIVE;
+        }
+        else if (type == Short.class) {
+            return (Converter<T>) SHORT;
+        }
+        else if (type == short.class) {
+            return (Converter<T>) SHORT_PRIMITIVE;
+        }
+        else if (type == Integer.class) {
+            return (Converter<T>) INTEGER;
+        }
+        else if (type == int.class) {
+            return (Converter<T>) INTEGER_PRIMITIVE;
+        }
+        else if (type == Long.class) {
+            return (Converter<T>) LONG;
+        }
+        else if (type == long.class) {
+            return (Converter<T>) LONG_PRIMITIVE;
+        }
+        else if (type == Float.class) {
+            return (Converter<T>) FLOAT;
+        }
+        else if (type == float.class) {
+            return (Converter<T>) FLOAT_PRIMITIVE;
+        }
+        else if (type == Double.class) {
+            return (Converter<T>) DOUBLE;
+        }
+        else if (type == double.class) {
+            return (Converter<T>) DOUBLE_PRIMITIVE;
+        }
+        else if (type == BigDecimal.class) {
+            return (Converter<T>) BIG_DECIMAL;
+        }
+        else if (type == BigInteger.class) {
+            return (Converter<T>) BIG_INTEGER;
+        }
+
+        // Booleans have a set of allowed values
+        else if (type == Boolean.class) {
+            return (Converter<T>) BOOLEAN;
+        }
+        else if (type == boolean.class) {
+            return (Converter<T>) BOOLEAN_PRIMITIVE;
+        }
+
+        // [#29] Date-time types
+        else if (type == java.util.Date.class) {
+            return (Converter<T>) DATE;
+        }
+        else if (type == java.util.Calendar.class) {
+            return (Converter<T>) CALENDAR;
+        }
+        else if (type == java.util.GregorianCalendar.class) {
+            return (Converter<T>) GREGORIAN_CALENDAR;
+        }
+        else if (type == java.sql.Timestamp.class) {
+            return (Converter<T>) SQL_TIMESTAMP;
+        }
+        else if (type == java.sql.Date.class) {
+            return (Converter<T>) SQL_DATE;
+        }
+        else if (type == java.sql.Time.class) {
+            return (Converter<T>) SQL_TIME;
+        }
+
+        // All other types are ignored
+        return (Converter<T>) NULL;
+    }
+
+    // -------------------------------------------------------------------------
+    // Conversion utilities
+    // -------------------------------------------------------------------------
+
+    /**
+     * Parse a {@link BigDecimal} or return <code>null</code> if the value is
+     * illegal. Obviously illegal values are rejected without throwing any
+     * exception
+     */
+    private static final BigDecimal decimal(String value) {
+        if (value == null || !Util.isNumeric(value)) {
+            return null;
+        }
+
+        try {
+            return new BigDecimal(value);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a {@link Long} or return <code>null</code> if the value is illegal.
+     */
+    private static final Long integer(String value) {
+        if (value == null) {
+            return null;
+        }
+        else if (Util.isInteger(value)) {
+            return Util.parseLong(value);
+        }
+
+        BigDecimal decimal = decimal(value);
+        return decimal == null ? null : Long.valueOf(decimal.longValue());
+    }
+
+    /**
+     * Parse a {@link Double} or return <code>null</code> if the value is
+     * illegal.
+     */
+    private static final Double floating(String value) {
+        if (value == null || value.length() == 0) {
+            return null;
+        }
+
+        try {
+            return Double.valueOf(value);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a {@link Boolean} or return <code>null</code> if the value is
+     * illegal.
+     */
+    private static final Boolean bool(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        for (String s : TRUE_VALUES) {
+            if (s.equalsIgnoreCase(value)) {
+                return Boolean.TRUE;
+            }
+        }
+
+        for (String s : FALSE_VALUES) {
+            if (s.equalsIgnoreCase(value)) {
+                return Boolean.FALSE;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Parse a {@link java.util.Date} or return <code>null</code> if the value
+     * is illegal.
+     */
+    private static final java.util.Date date(String value) {
+        try {
+            return Util.parseDate(value);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Built-in converters
+    // -------------------------------------------------------------------------
+
+    /**
+     * A converter for array types, splitting values and converting each
+     * element using the component type's converter.
+     */
+    private static class ArrayConverter implements Converter<Object> {
+
+        private final Class<?> component;
+
+        ArrayConverter(Class<?> component) {
+            this.component = component;
+        }
+
+        @Override
+        public Object convert(String value) {
+            if (value == null) {
+                return null;
+            }
+
+            Converter<?> converter = converter(component);
+            List<String> split = Util.split(value);
+
+            final int size = split.size();
+            Object result = Array.newInstance(component, size);
+
+            for (int i = 0; i < size; i++) {
+                Array.set(result, i, converter.convert(split.get(i)));
+            }
+
+            return result;
+        }
+    }
+
+    private static final Converter<int[]>              INT_ARRAY          = new Converter<int[]>() {
+        @Override
+        public int[] convert(String value) {
+            if (value == null) {
+                return null;
+            }
+            else if (isCustom(int.class, INTEGER_PRIMITIVE)) {
+                return (int[]) new ArrayConverter(int.class).convert(value);
+            }
+
+            return Util.splitInts(value);
+        }
+    };
+
+    private static final Converter<long[]>             LONG_ARRAY         = new Converter<long[]>() {
+        @Override
+        public long[] convert(String value) {
+            if (value == null) {
+                return null;
+            }
+            else if (isCustom(long.class, LONG_PRIMITIVE)) {
+                return (long[]) new ArrayConverter(long.class).convert(value);
+            }
+
+            return Util.splitLongs(value);
+        }
+    };
+
+    private static final Converter<double[]>           DOUBLE_ARRAY       = new Converter<double[]>() {
+        @Override
+        public double[] convert(String value) {
+            if (value == null) {
+                return null;
+            }
+            else if (isCustom(double.class, DOUBLE_PRIMITIVE)) {
+                return (double[]) new ArrayConverter(double.class).convert(value);
+            }
+
+            return Util.splitDoubles(value);
+        }
+    };
+
+    private static final Converter<Object>             NULL               = new Converter<Object>() {
+        @Override
+        public Object convert(String value) {
+            return null;
+        }
+    };
+
+    private static final Converter<String>             STRING             = new Converter<String>() {
+        @Override
+        public String convert(String value) {
+            return value;
+        }
+    };
+
+    private static final Converter<Byte>               BYTE               = new Converter<Byte>() {
+        @Override
+        public Byte convert(String value) {
+            Long result = integer(value);
+            return result == null ? null : Byte.valueOf(result.byteValue());
+        }
+    };
+
+    private static final Converter<Byte>               BYTE_PRIMITIVE     = new Converter<Byte>() {
+        @Override
+        public Byte convert(String value) {
+            return (byte) Util.parseLong(value);
+        }
+    };
+
+    private static final Converter<Short>              SHORT              = new Converter<Short>() {
+        @Override
+        public Short convert(String value) {
+            Long result = integer(value);
+            return result == null ? null : Short.valueOf(result.shortValue());
+        }
+    };
+
+    private static final Converter<Short>              SHORT_PRIMITIVE    = new Converter<Short>() {
+        @Override
+        public Short convert(String value) {
+            return (short) Util.parseLong(value);
+        }
+    };
+
+    private static final Converter<Integer>            INTEGER            = new Converter<Integer>() {
+        @Override
+        public Integer convert(String value) {
+            Long result = integer(value);
+            return result == null ? null : Integer.valueOf(result.intValue());
+        }
+    };
+
+    private static final Converter<Integer>            INTEGER_PRIMITIVE  = new Converter<Integer>() {
+        @Override
+        public Integer convert(String value) {
+            return Util.parseInt(value);
+        }
+    };
+
+    private static final Converter<Long>               LONG               = new Converter<Long>() {
+        @Override
+        public Long convert(String value) {
+            return integer(value);
+        }
+    };
+
+    private static final Converter<Long>               LONG_PRIMITIVE     = new Converter<Long>() {
+        @Override
+        public Long convert(String value) {
+            return Util.parseLong(value);
+        }
+    };
+
+    private static final Converter<Float>              FLOAT              = new Converter<Float>() {
+        @Override
+        public Float convert(String value) {
+            if (value == null || value.length() == 0) {
+                return null;
+            }
+
+            try {
+                return Float.valueOf(value);
+            }
+            catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    };
+
+    private static final Converter<Float>              FLOAT_PRIMITIVE    = new Converter<Float>() {
+        @Override
+        public Float convert(String value) {
+            Float result = FLOAT.convert(value);
+            return result == null ? 0.0f : result;
+        }
+    };
+
+    private static final Converter<Double>             DOUBLE             = new Converter<Double>() {
+        @Override
+        public Double convert(String value) {
+            return floating(value);
+        }
+    };
+
+    private static final Converter<Double>             DOUBLE_PRIMITIVE   = new Converter<Double>() {
+        @Override
+        public Double convert(String value) {
+            return Util.parseDouble(value);
+        }
+    };
+
+    private static final Converter<BigDecimal>         BIG_DECIMAL        = new Converter<BigDecimal>() {
+        @Override
+        public BigDecimal convert(String value) {
+            return decimal(value);
+        }
+    };
+
+    private static final Converter<BigInteger>         BIG_INTEGER        = new Converter<BigInteger>() {
+        @Override
+        public BigInteger convert(String value) {
+            BigDecimal result = decimal(value);
+            return result == null ? null : result.toBigInteger();
+        }
+    };
+
+    private static final Converter<Boolean>            BOOLEAN            = new Converter<Boolean>() {
+        @Override
+        public Boolean convert(String value) {
+            return bool(value);
+        }
+    };
+
+    private static final Converter<Boolean>            BOOLEAN_PRIMITIVE  = new Converter<Boolean>() {
+        @Override
+        public Boolean convert(String value) {
+            return bool(value) == Boolean.TRUE;
+        }
+    };
+
+    private static final Converter<java.util.Date>     DATE               = new Converter<java.util.Date>() {
+        @Override
+        public java.util.Date convert(String value) {
+            return date(value);
+        }
+    };
+
+    private static final Converter<Calendar>           CALENDAR           = new Converter<Calendar>() {
+        @Override
+        public Calendar convert(String value) {
+            java.util.Date date = date(value);
+
+            if (date == null) {
+                return null;
+            }
+
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(date);
+            return cal;
+        }
+    };
+
+    private static final Converter<GregorianCalendar>  GREGORIAN_CALENDAR = new Converter<GregorianCalendar>() {
+        @Override
+        public GregorianCalendar convert(String value) {
+            java.util.Date date = date(value);
+
+            if (date == null) {
+                return null;
+            }
+
+            GregorianCalendar cal = new GregorianCalendar();
+            cal.setTime(date);
+            return cal;
+        }
+    };
+
+    private static final Converter<java.sql.Timestamp> SQL_TIMESTAMP      = new Converter<java.sql.Timestamp>() {
+        @Override
+        public java.sql.Timestamp convert(String value) {
+            java.util.Date date = date(value);
+            return date == null ? null : new java.sql.Timestamp(date.getTime());
+        }
+    };
+
+    private static final Converter<java.sql.Date>      SQL_DATE           = new Converter<java.sql.Date>() {
+        @Override
+        public java.sql.Date convert(String value) {
+            java.util.Date date = date(value);
+            return date == null ? null : new java.sql.Date(date.getTime());
+        }
+    };
+
+    private static final Converter<java.sql.Time>      SQL_TIME           = new Converter<java.sql.Time>() {
+        @Override
+        public java.sql.Time convert(String value) {
+            java.util.Date date = date(value);
+            return date == null ? null : new java.sql.Time(date.getTime());
+        }
+    };
+
+    private ConverterRegistry() {}
+}
@@ -0,0 +1,294 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A write-through cursor generating XML in document order, created with
+ * {@link JOOX#cursor(java.io.Writer)} and its overloads.
+ * <p>
+ * Unlike a {@link Match}, a cursor does not build a DOM. Every element,
+ * attribute and text is written to an underlying {@link XMLStreamWriter} as
+ * soon as it is added, such that memory consumption stays constant, no matter
+ * how large the generated document gets. As a consequence, content can only
+ * be added in document order: attributes must be set before an element's
+ * content, and elements cannot be modified once they are closed. For
+ * instance:
+ *
+ * <pre>
+ * Cursor cursor = cursor(writer).start("rows");
+ *
+ * for (Row row : rows) {
+ *     cursor.start("row").attr("id", row.id).text(row.text).end();
+ * }
+ *
+ * cursor.close();
+ * </pre>
+ * <p>
+ * Any {@link XMLStreamException} is wrapped in a {@link RuntimeException}.
+ *
+ * @author Lukas Eder
+ */
+public final class Cursor {
+
+    private final XMLStreamWriter writer;
+    private final List<String>    open;
+    private boolean               content;
+
+    Cursor(XMLStreamWriter writer) {
+        this.writer = writer;
+        this.open = new ArrayList<String>();
+        this.content = true;
+    }
+
+    /**
+     * Start a new element as the last child of the current element
+     *
+     * @return This same cursor, positioned on the new element
+     */
+    public final Cursor start(String tag) {
+        try {
+            writer.writeStartElement(tag);
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        open.add(tag);
+        content = false;
+        return this;
+    }
+
+    /**
+     * Set an attribute on the current element
+     *
+     * @return This same cursor
+     * @throws IllegalStateException If the current element already has content
+     */
+    public final Cursor attr(String name, String value) {
+        checkOpen();
+
+        if (content) {
+            throw new IllegalStateException("Attributes must be set before any content: " + name);
+        }
+
+        try {
+            writer.writeAttribute(name, value);
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        return this;
+    }
+
+    /**
+     * Append text to the current element
+     *
+     * @return This same cursor
+     */
+    public final Cursor text(String text) {
+        checkOpen();
+
+        try {
+            writer.writeCharacters(text);
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        content = true;
+        return this;
+    }
+
+    /**
+     * Append complete trees to the current element
+     *
+     * @return This same cursor
+     */
+    public final Cursor append(Tree... trees) {
+        checkOpen();
+
+        try {
+            for (Tree tree : trees) {
+                tree.write(writer);
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        content = true;
+        return this;
+    }
+
+    /**
+     * Append copies of DOM elements to the current element
+     *
+     * @return This same cursor
+     */
+    public final Cursor append(Element... elements) {
+        checkOpen();
+
+        try {
+            for (Element element : elements) {
+                write(element);
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        content = true;
+        return this;
+    }
+
+    /**
+     * Append copies of the elements of several matches to the current element
+     *
+     * @return This same cursor
+     */
+    public final Cursor append(Match... matches) {
+        return append(Util.elements(matches));
+    }
+
+    /**
+     * End the current element
+     *
+     * @return This same cursor, positioned on the parent element
+     * @throws IllegalStateException If there is no current element
+     */
+    public final Cursor end() {
+        checkOpen();
+
+        try {
+            writer.writeEndElement();
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+
+        open.remove(open.size() - 1);
+        content = true;
+        return this;
+    }
+
+    /**
+     * End all open elements and the document, and close the underlying
+     * {@link XMLStreamWriter}.
+     * <p>
+     * This does not close the stream or writer wrapped by the
+     * {@link XMLStreamWriter}.
+     */
+    public final void close() {
+        while (!open.isEmpty()) {
+            end();
+        }
+
+        try {
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final void checkOpen() {
+        if (open.isEmpty()) {
+            throw new IllegalStateException("No element is open");
+        }
+    }
+
+    private final void write(Node node) throws XMLStreamException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE: {
+                writer.writeStartElement(node.getNodeName());
+
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Node attr = attributes.item(i);
+                    writer.writeAttribute(attr.getNodeName(), attr.getNodeValue());
+                }
+
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    write(child);
+                }
+
+                writer.writeEndElement();
+                break;
+            }
+
+            case Node.TEXT_NODE: {
+                writer.writeCharacters(node.getNodeValue());
+                break;
+            }
+
+            case Node.CDATA_SECTION_NODE: {
+                writer.writeCData(node.getNodeValue());
+                break;
+            }
+
+            case Node.COMMENT_NODE: {
+                writer.writeComment(node.getNodeValue());
+                break;
+            }
+
+            case Node.PROCESSING_INSTRUCTION_NODE: {
+                writer.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+            }
+
+            case Node.ENTITY_REFERENCE_NODE: {
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    write(child);
+                }
+
+                break;
+            }
+        }
+    }
+}
@@ -40,7 +40,6 @@ import static org.joox.JOOX.convert;
 import static org.joox.JOOX.iterable;
 import static org.joox.JOOX.list;
 import static org.joox.JOOX.none;
-import static org.joox.JOOX.selector;
 import static org.joox.Util.context;
 import static org.joox.Util.nonNull;
 import static org.joox.selector.CSS2XPath.css2xpath;
@@ -59,28 +58,39 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.bind.JAXB;
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import javax.xml.xpath.XPathVariableResolver;
 
+import org.joox.compact.CompactDOM;
+import org.joox.selector.CSSMatcher;
+import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
@@ -92,9 +102,10 @@ import org.w3c.dom.NodeList;
  */
 class Impl implements Match {
 
-    private final Document      document;
-    private final List<Element> elements;
-    private final Impl          previousMatch;
+    private final Document             document;
+    private final NamespaceContextImpl namespaces;
+    private final List<Element>        elements;
+    private final Impl                 previousMatch;
 
     // -------------------------------------------------------------------------
     // Initialisation
@@ -104,8 +115,13 @@ class Impl implements Match {
         this(document, null);
     }
 
-    Impl(Document document, Impl previousMatch) {
+    Impl(Document document, NamespaceContextImpl namespaces) {
+        this(document, namespaces, null);
+    }
+
+    Impl(Document document, NamespaceContextImpl namespaces, Impl previousMatch) {
         this.document = document;
+        this.namespaces = namespaces;
         this.elements = new ArrayList<Element>();
         this.previousMatch = previousMatch;
     }
@@ -269,7 +285,7 @@ class Impl implements Match {
     public final Impl reverse() {
         List<Element> reversed = new ArrayList<Element>(elements);
         Collections.reverse(reversed);
-        return new Impl(document).addElements(reversed);
+        return new Impl(document, namespaces).addElements(reversed);
     }
 
     @Override
@@ -293,7 +309,46 @@ class Impl implements Match {
 
     @Override
     public final Impl child(Filter filter) {
-        return children(filter).eq(0);
+        final int size = size();
+        final boolean fast = isFast(filter);
+
+        List<Element> result = new ArrayList<Element>();
+        for (int matchIndex = 0; matchIndex < size; matchIndex++) {
+            Element match = get(matchIndex);
+
+            // Fast filters don't need the number of children, so the children
+            // are visited only up to the first match
+            if (fast) {
+                int elementIndex = 0;
+
+                for (Node n = match.getFirstChild(); n != null; n = n.getNextSibling()) {
+                    if (n.getNodeType() == Node.ELEMENT_NODE) {
+                        Element e = (Element) n;
+
+                        if (filter.filter(context(match, matchIndex, size, e, elementIndex++, -1))) {
+                            result.add(e);
+                            break;
+                        }
+                    }
+                }
+
+                continue;
+            }
+
+            List<Element> list = list(match.getChildNodes());
+            int elementSize = list.size();
+
+            for (int elementIndex = 0; elementIndex < elementSize; elementIndex++) {
+                Element e = list.get(elementIndex);
+
+                if (filter.filter(context(match, matchIndex, size, e, elementIndex, elementSize))) {
+                    result.add(e);
+                    break;
+                }
+            }
+        }
+
+        return new Impl(document, namespaces, this).addUniqueElements(result);
     }
 
     @Override
@@ -320,6 +375,11 @@ class Impl implements Match {
     public final Impl children(Filter filter) {
         final int size = size();
 
+        // Positional filters visit children only up to the last position
+        if (filter instanceof JOOX.At) {
+            return childrenAt(((JOOX.At) filter).indexes);
+        }
+
         List<Element> result = new ArrayList<Element>();
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
             Element match = get(matchIndex);
@@ -335,7 +395,35 @@ class Impl implements Match {
             }
         }
 
-        return new Impl(document, this).addUniqueElements(result);
+        return new Impl(document, namespaces, this).addUniqueElements(result);
+    }
+
+    /**
+     * Get the children at sorted, distinct, non-negative positions
+     */
+    private final Impl childrenAt(int[] indexes) {
+        List<Element> result = new ArrayList<Element>();
+
+        if (indexes.length > 0) {
+            for (Element match : elements) {
+                int position = 0;
+                int next = 0;
+
+                for (Node child = match.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (child.getNodeType() == Node.ELEMENT_NODE) {
+                        if (position++ == indexes[next]) {
+                            result.add((Element) child);
+
+                            if (++next == indexes.length) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return new Impl(document, namespaces, this).addUniqueElements(result);
     }
 
     @Override
@@ -343,7 +431,7 @@ class Impl implements Match {
         List<Match> result = new ArrayList<Match>();
 
         for (Element element : elements) {
-            result.add(new Impl(document).addElements(element));
+            result.add(new Impl(document, namespaces).addElements(element));
         }
 
         return result;
@@ -378,12 +466,12 @@ class Impl implements Match {
             }
         }
 
-        return new Impl(document).addElements(result);
+        return new Impl(document, namespaces).addElements(result);
     }
 
     @Override
     public final Impl eq(int... indexes) {
-        Impl result = new Impl(document);
+        Impl result = new Impl(document, namespaces);
 
         for (Element e : get(indexes)) {
             if (e != null) {
@@ -405,19 +493,182 @@ class Impl implements Match {
         // Simple selectors are either valid XML element names, or *. They can
         // be evaluated using standard DOM API
         if (SIMPLE_SELECTOR.matcher(selector).matches()) {
+            String tagName = selector.intern();
+            LiveQueries live = LiveQueries.get(document);
+
+            if (live != null) {
+                Impl result = new Impl(document, namespaces, this);
+
+                for (Element element : elements) {
+                    result.addElements(live.find(element, tagName));
+                }
+
+                return result;
+            }
+
+            List<NodeList> result = new ArrayList<NodeList>();
+
+            for (Element element : elements) {
+                result.add(element.getElementsByTagName(tagName));
+            }
+
+            return new Impl(document, namespaces, this).addNodeLists(result);
+        }
+
+        // Namespaced simple selectors are either ns|E, *|E or |E. They can be
+        // evaluated using DOM Level 2 API
+        Matcher matcher = NAMESPACE_SELECTOR.matcher(selector);
+        if (matcher.matches()) {
+            String namespaceURI = namespaceURI(matcher.group(1));
+            String localName = matcher.group(2).intern();
+            LiveQueries live = LiveQueries.get(document);
+
+            if (live != null) {
+                Impl result = new Impl(document, namespaces, this);
+
+                for (Element element : elements) {
+                    result.addElements(live.find(element, namespaceURI, localName));
+                }
+
+                return result;
+            }
+
             List<NodeList> result = new ArrayList<NodeList>();
 
             for (Element element : elements) {
-                result.add(element.getElementsByTagName(selector));
+                result.add(element.getElementsByTagNameNS(namespaceURI, localName));
             }
 
-            return new Impl(document, this).addNodeLists(result);
+            return new Impl(document, namespaces, this).addNodeLists(result);
         }
 
         // CSS selectors are transformed to XPath expressions
         else {
-            return new Impl(document, this).addElements(xpath(css2xpath(selector, isRoot())).get());
+            NamespaceContextImpl context = (namespaces == null)
+                ? new NamespaceContextImpl(Collections.<String, String> emptyMap())
+                : namespaces;
+
+            return new Impl(document, namespaces, this).addElements(xpath(css2xpath(selector, isRoot(), context)).get());
+        }
+    }
+
+    @Override
+    public final Map<String, Match> findAll(String... selectors) {
+        return findAll(new SelectorSet(selectors));
+    }
+
+    @Override
+    public final Map<String, Match> findAll(SelectorSet selectors) {
+        Map<String, Match> result = new LinkedHashMap<String, Match>();
+        List<List<Element>> matches = selectors.matcher.select(elements, isRoot());
+
+        for (int i = 0; i < selectors.selectors.length; i++) {
+            String selector = selectors.selectors[i];
+
+            // Unsupported selectors are evaluated individually
+            if (matches.get(i) == null) {
+                result.put(selector, find(selector));
+            }
+            else {
+                result.put(selector, new Impl(document, namespaces, this).addElements(matches.get(i)));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public final Impl findFirst() {
+        return child();
+    }
+
+    @Override
+    public final Impl findFirst(String selector) {
+        List<Element> result = new ArrayList<Element>();
+        boolean simple = SIMPLE_SELECTOR.matcher(selector).matches();
+        Matcher matcher = NAMESPACE_SELECTOR.matcher(selector);
+
+        // Simple selectors are evaluated using lazy DOM node lists, which
+        // stop at the first element that is accessed
+        if (simple || matcher.matches()) {
+            String namespaceURI = simple ? null : namespaceURI(matcher.group(1));
+            String localName = (simple ? selector : matcher.group(2)).intern();
+            LiveQueries live = LiveQueries.get(document);
+
+            for (Element element : elements) {
+                Element first;
+
+                // Cached live results are reused, but they are not worth
+                // scanning and caching a whole subtree for a single element
+                Element[] cached = live == null ? null : simple
+                    ? live.cached(element, localName)
+                    : live.cached(element, namespaceURI, localName);
+
+                if (cached != null) {
+                    first = cached.length > 0 ? cached[0] : null;
+                }
+                else {
+                    first = (Element) (simple
+                        ? element.getElementsByTagName(localName)
+                        : element.getElementsByTagNameNS(namespaceURI, localName)).item(0);
+                }
+
+                if (first != null) {
+                    result.add(first);
+                }
+            }
+        }
+
+        // Other CSS selectors are matched in a tree walk, if possible
+        else {
+            CSSMatcher css = new CSSMatcher(selector);
+
+            for (Element element : elements) {
+                Element first;
+
+                if (css.isSupported(0)) {
+                    first = css.selectFirst(0, Collections.singletonList(element), isRoot(element));
+                }
+                else {
+                    first = new Impl(document, namespaces).addElements(element).find(selector).get(0);
+                }
+
+                if (first != null) {
+                    result.add(first);
+                }
+            }
+        }
+
+        return new Impl(document, namespaces, this).addUniqueElements(result);
+    }
+
+    @Override
+    public final Impl findFirst(Filter filter) {
+        List<Element> result = new ArrayList<Element>();
+
+        final int size = size();
+        final boolean fast = isFast(filter);
+
+        for (int matchIndex = 0; matchIndex < size; matchIndex++) {
+            Element match = get(matchIndex);
+
+            final NodeList nodes = match.getElementsByTagName("*");
+            final int elementSize = fast ? -1 : nodes.getLength();
+
+            for (int elementIndex = 0;; elementIndex++) {
+                Element e = (Element) nodes.item(elementIndex);
+
+                if (e == null) {
+                    break;
+                }
+                else if (filter.filter(context(match, matchIndex, size, e, elementIndex, elementSize))) {
+                    result.add(e);
+                    break;
+                }
+            }
         }
+
+        return new Impl(document, namespaces, this).addUniqueElements(result);
     }
 
     /**
@@ -426,7 +677,7 @@ class Impl implements Match {
      */
     private boolean isRoot() {
         for (Element element : elements) {
-            if (element.getParentNode().getNodeType() == Node.DOCUMENT_NODE) {
+            if (isRoot(element)) {
                 return true;
             }
         }
@@ -434,6 +685,10 @@ class Impl implements Match {
         return false;
     }
 
+    private static boolean isRoot(Element element) {
+        return element.getParentNode().getNodeType() == Node.DOCUMENT_NODE;
+    }
+
     @Override
     public final Impl find(Filter filter) {
         List<Element> result = new ArrayList<Element>();
@@ -459,7 +714,7 @@ class Impl implements Match {
             }
         }
 
-        return new Impl(document, this).addUniqueElements(result);
+        return new Impl(document, namespaces, this).addUniqueElements(result);
     }
 
     @Override
@@ -472,12 +727,17 @@ class Impl implements Match {
         List<Element> result = new ArrayList<Element>();
 
         try {
-            XPathFactory factory = XPathFactory.newInstance();
-            XPath xpath = factory.newXPath();
+            XPath xpath = Util.xpathFactory().newXPath();
 
             // Add the xalan ExtensionNamespaceContext if Xalan is available
             Util.xalanExtensionAware(xpath);
 
+            // Namespace prefixes bound to this match take precedence over
+            // xalan's extension namespaces
+            if (namespaces != null) {
+                xpath.setNamespaceContext(namespaces);
+            }
+
             // Add a variable resolver if we have any variables
             if (variables != null && variables.length != 0) {
                 xpath.setXPathVariableResolver(new VariableResolver(expression, variables));
@@ -494,16 +754,16 @@ class Impl implements Match {
             throw new RuntimeException(e);
         }
 
-        return new Impl(document).addUniqueElements(result);
+        return new Impl(document, namespaces).addUniqueElements(result);
     }
 
     @Override
     public final Impl first() {
         if (size() > 0) {
-            return new Impl(document).addElements(get(0));
+            return new Impl(document, namespaces).addElements(get(0));
         }
         else {
-            return new Impl(document);
+            return new Impl(document, namespaces);
         }
     }
 
@@ -538,7 +798,7 @@ class Impl implements Match {
             }
         }
 
-        return new Impl(document).addElements(result);
+        return new Impl(document, namespaces).addElements(result);
     }
 
     @Override
@@ -566,10 +826,10 @@ class Impl implements Match {
         final int size = size();
 
         if (size > 0) {
-            return new Impl(document).addElements(get(size - 1));
+            return new Impl(document, namespaces).addElements(get(size - 1));
         }
         else {
-            return new Impl(document);
+            return new Impl(document, namespaces);
         }
     }
 
@@ -678,7 +938,7 @@ class Impl implements Match {
             }
         }
 
-        return new Impl(document, this).addUniqueElements(result);
+        return new Impl(document, namespaces, this).addUniqueElements(result);
     }
 
     @Override
@@ -706,6 +966,36 @@ class Impl implements Match {
         return parents(false, none(), filter);
     }
 
+    @Override
+    public final Impl closest(String selector) {
+        return closest(selector(selector));
+    }
+
+    @Override
+    public final Impl closest(Filter filter) {
+        final int size = size();
+        List<Element> result = new ArrayList<Element>();
+
+        for (int matchIndex = 0; matchIndex < size; matchIndex++) {
+            Element match = get(matchIndex);
+            Node node = match;
+
+            for (int elementIndex = 0; node != null; node = node.getParentNode()) {
+                if (node.getNodeType() == Node.ELEMENT_NODE) {
+                    Element e = (Element) node;
+
+                    // TODO: [#34] Calculate elementSize()
+                    if (filter.filter(context(match, matchIndex, size, e, elementIndex++, -1))) {
+                        result.add(e);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return new Impl(document, namespaces, this).addUniqueElements(result);
+    }
+
     @Override
     public final Impl parents() {
         return parents(all());
@@ -785,7 +1075,7 @@ class Impl implements Match {
             }
         }
 
-        return new Impl(document, this).addUniqueElements(result);
+        return new Impl(document, namespaces, this).addUniqueElements(result);
     }
 
     @Override
@@ -882,7 +1172,7 @@ class Impl implements Match {
         }
 
         Collections.reverse(result);
-        return new Impl(document, this).addUniqueElements(result);
+        return new Impl(document, namespaces, this).addUniqueElements(result);
     }
 
     @Override
@@ -920,13 +1210,13 @@ class Impl implements Match {
         end = Math.min(size, end);
 
         if (start > end) {
-            return new Impl(document);
+            return new Impl(document, namespaces);
         }
         if (start == 0 && end == size) {
             return this;
         }
 
-        return new Impl(document).addElements(elements.subList(start, end));
+        return new Impl(document, namespaces).addElements(elements.subList(start, end));
     }
 
     @Override
@@ -1015,17 +1305,7 @@ class Impl implements Match {
             Element element = get(i);
             result.add(element);
 
-            Node parent = element.getParentNode();
-            Node next = element.getNextSibling();
-
-            for (Element e : detached) {
-                if (i == 0) {
-                    result.add((Element) parent.insertBefore(e, next));
-                }
-                else {
-                    result.add((Element) parent.insertBefore(e.cloneNode(true), next));
-                }
-            }
+            element.getParentNode().insertBefore(fragment(detached, i, result), element.getNextSibling());
         }
 
         elements.clear();
@@ -1083,17 +1363,8 @@ class Impl implements Match {
 
         for (int i = 0; i < size; i++) {
             Element element = get(i);
-            Node parent = element.getParentNode();
-
-            for (Element e : detached) {
-                if (i == 0) {
-                    result.add((Element) parent.insertBefore(e, element));
-                }
-                else {
-                    result.add((Element) parent.insertBefore(e.cloneNode(true), element));
-                }
-            }
 
+            element.getParentNode().insertBefore(fragment(detached, i, result), element);
             result.add(element);
         }
 
@@ -1142,14 +1413,7 @@ class Impl implements Match {
         List<Element> detached = Util.importOrDetach(document, content);
 
         for (int i = 0; i < size; i++) {
-            for (Element e : detached) {
-                if (i == 0) {
-                    get(i).appendChild(e);
-                }
-                else {
-                    get(i).appendChild(e.cloneNode(true));
-                }
-            }
+            get(i).appendChild(fragment(detached, i, null));
         }
 
         return this;
@@ -1195,20 +1459,37 @@ class Impl implements Match {
         List<Element> detached = Util.importOrDetach(document, content);
 
         for (int i = 0; i < size; i++) {
-            for (Element e : detached) {
-                Element element = get(i);
-                Node first = element.getFirstChild();
+            Element element = get(i);
+            element.insertBefore(fragment(detached, i, null), element.getFirstChild());
+        }
 
-                if (i == 0) {
-                    element.insertBefore(e, first);
-                }
-                else {
-                    element.insertBefore(e.cloneNode(true), first);
-                }
+        return this;
+    }
+
+    /**
+     * Collect the content inserted into the n-th of the matched elements in a
+     * single document fragment, such that it can be inserted at once.
+     * <p>
+     * The first matched element receives the content itself, all others
+     * receive deep copies of it.
+     *
+     * @param content The content, detached and in this document
+     * @param matchIndex The index of the matched element
+     * @param result A list to add inserted elements to, or <code>null</code>
+     */
+    private final DocumentFragment fragment(List<Element> content, int matchIndex, List<Element> result) {
+        DocumentFragment fragment = document.createDocumentFragment();
+
+        for (Element e : content) {
+            Node node = matchIndex == 0 ? e : e.cloneNode(true);
+            fragment.appendChild(node);
+
+            if (result != null) {
+                result.add((Element) node);
             }
         }
 
-        return this;
+        return fragment;
     }
 
     @Override
@@ -1238,7 +1519,50 @@ class Impl implements Match {
 
     @Override
     public final <T> List<T> attrs(String name, Class<T> type) {
-        return convert(attrs(name), type);
+        Converter<T> converter = JOOX.converter(type);
+        List<T> result = new ArrayList<T>(size());
+
+        for (Element element : elements) {
+            result.add(converter.convert(Util.attr(element, name)));
+        }
+
+        return result;
+    }
+
+    @Override
+    public final int[] ints(String name) {
+        final int size = size();
+        final int[] result = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            result[i] = Util.parseInt(Util.attr(elements.get(i), name));
+        }
+
+        return result;
+    }
+
+    @Override
+    public final long[] longs(String name) {
+        final int size = size();
+        final long[] result = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            result[i] = Util.parseLong(Util.attr(elements.get(i), name));
+        }
+
+        return result;
+    }
+
+    @Override
+    public final double[] doubles(String name) {
+        final int size = size();
+        final double[] result = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            result[i] = Util.parseDouble(Util.attr(elements.get(i), name));
+        }
+
+        return result;
     }
 
     @Override
@@ -1403,7 +1727,50 @@ class Impl implements Match {
 
     @Override
     public final <T> List<T> texts(Class<T> type) {
-        return convert(texts(), type);
+        Converter<T> converter = JOOX.converter(type);
+        List<T> result = new ArrayList<T>(size());
+
+        for (Element element : elements) {
+            result.add(converter.convert(Util.text(element)));
+        }
+
+        return result;
+    }
+
+    @Override
+    public final int[] ints() {
+        final int size = size();
+        final int[] result = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            result[i] = Util.parseInt(Util.text(elements.get(i)));
+        }
+
+        return result;
+    }
+
+    @Override
+    public final long[] longs() {
+        final int size = size();
+        final long[] result = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            result[i] = Util.parseLong(Util.text(elements.get(i)));
+        }
+
+        return result;
+    }
+
+    @Override
+    public final double[] doubles() {
+        final int size = size();
+        final double[] result = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            result[i] = Util.parseDouble(Util.text(elements.get(i)));
+        }
+
+        return result;
     }
 
     @Override
@@ -1447,27 +1814,38 @@ class Impl implements Match {
     public final Impl remove(Filter filter) {
         final int size = size();
 
-        List<Element> remove = new ArrayList<Element>();
+        boolean[] remove = new boolean[size];
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
             Element match = get(matchIndex);
 
             if (filter.filter(context(match, matchIndex, size))) {
-                remove.add(match);
+                remove[matchIndex] = true;
             }
         }
 
-        for (Element element : remove) {
-            remove(element);
+        // Detach all removed elements and compact the set of matched elements
+        // in a single pass, rather than searching it for every element
+        int kept = 0;
+        for (int matchIndex = 0; matchIndex < size; matchIndex++) {
+            Element match = elements.get(matchIndex);
+
+            if (remove[matchIndex]) {
+                Node parent = match.getParentNode();
+
+                // The same element may be matched several times
+                if (parent != null) {
+                    parent.removeChild(match);
+                }
+            }
+            else {
+                elements.set(kept++, match);
+            }
         }
 
+        elements.subList(kept, size).clear();
         return this;
     }
 
-    private final void remove(Element element) {
-        element.getParentNode().removeChild(element);
-        elements.remove(element);
-    }
-
     private final void empty(Element element) {
         Node child;
 
@@ -1608,7 +1986,18 @@ class Impl implements Match {
             Element match = get(matchIndex);
 
             String text = nonNull(tag.content(context(match, matchIndex, size)));
-            result.add((Element) document.renameNode(match, "", text));
+            String namespaceURI = match.getNamespaceURI();
+            String name = match.getNodeName();
+            Element renamed = (Element) document.renameNode(match, "", text);
+
+            // Renamed elements are not fully reported by mutation events
+            Journal.renamed(match, renamed, namespaceURI, name);
+
+            if (renamed == match) {
+                LiveQueries.renamed(match);
+            }
+
+            result.add(renamed);
         }
 
         elements.clear();
@@ -1627,7 +2016,58 @@ class Impl implements Match {
 
     @Override
     public final Impl copy() {
-        Impl copy = new Impl(document, previousMatch);
+        Impl copy = new Impl(document, namespaces, previousMatch);
+        copy.elements.addAll(elements);
+        return copy;
+    }
+
+    @Override
+    public final Impl batch(Batch batch) {
+        Journal journal = Journal.open(document);
+        int mark = journal.size();
+        boolean success = false;
+
+        try {
+            batch.batch(this);
+            success = true;
+        }
+        finally {
+            if (!success) {
+
+                // A failing rollback must not hide the batch's own exception
+                try {
+                    journal.rollback(mark);
+                }
+                catch (RuntimeException ignore) {}
+            }
+
+            journal.close();
+        }
+
+        return this;
+    }
+
+    @Override
+    public final Impl live() {
+        if (document != null) {
+            LiveQueries.enable(document);
+        }
+
+        return this;
+    }
+
+    @Override
+    public final Impl namespace(String namespacePrefix, String namespaceURI) {
+        return namespaces(Collections.singletonMap(namespacePrefix, namespaceURI));
+    }
+
+    @Override
+    public final Impl namespaces(Map<String, String> map) {
+        NamespaceContextImpl context = (namespaces == null)
+            ? new NamespaceContextImpl(map)
+            : namespaces.add(map);
+
+        Impl copy = new Impl(document, context, previousMatch);
         copy.elements.addAll(elements);
         return copy;
     }
@@ -1743,7 +2183,7 @@ class Impl implements Match {
 
     @Override
     public final <T> List<T> ids(Class<T> type) {
-        return JOOX.convert(ids(), type);
+        return attrs("id", type);
     }
 
     // ---------------------------------------------------------------------
@@ -1774,12 +2214,24 @@ class Impl implements Match {
         return write(new FileOutputStream(file));
     }
 
+    @Override
+    public final Match snapshot(OutputStream stream) throws IOException {
+        try {
+            CompactDOM.write(document, stream);
+        }
+        finally {
+            stream.close();
+        }
+
+        return this;
+    }
+
     @Override
     public final <T> List<T> unmarshal(Class<T> type) {
         List<T> result = new ArrayList<T>();
 
         for (Element element : elements) {
-            result.add(JAXB.unmarshal(new DOMSource(element), type));
+            result.add(JAXBCache.unmarshal(new DOMSource(element), type));
         }
 
         return result;
@@ -1790,6 +2242,83 @@ class Impl implements Match {
         return eq(indexes).unmarshal(type);
     }
 
+    @Override
+    public final <T> List<T> unmarshal(Class<T> type, Executor executor) {
+        final int size = size();
+        final int chunk = Math.max(1, size / (Runtime.getRuntime().availableProcessors() * 4));
+        final DocumentBuilder builder = JOOX.builder();
+
+        Object[] result = new Object[size];
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>();
+
+        for (int from = 0; from < size; from += chunk) {
+            int to = Math.min(size, from + chunk);
+
+            // DOM implementations are not thread-safe, not even for reads.
+            // Every task reads its own copy of its elements, which is created
+            // on the calling thread
+            Document document = builder.newDocument();
+            List<Element> copies = new ArrayList<Element>(to - from);
+
+            for (int i = from; i < to; i++) {
+                copies.add(Util.copy(document, elements.get(i)));
+            }
+
+            FutureTask<Void> task = new FutureTask<Void>(new UnmarshalTask<T>(type, copies, result, from));
+
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        try {
+            for (FutureTask<Void> task : tasks) {
+                task.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            for (FutureTask<Void> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(result);
+        return new ArrayList<T>(list);
+    }
+
+    @Override
+    public final <T> Iterator<T> unmarshalIterator(final Class<T> type) {
+        final Iterator<Element> it = new ArrayList<Element>(elements).iterator();
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return JAXBCache.unmarshal(new DOMSource(it.next()), type);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     @Override
     public final <T> T unmarshalOne(Class<T> type) {
         List<T> list = unmarshal(type);
@@ -1808,14 +2337,15 @@ class Impl implements Match {
 
     @Override
     public final Impl transform(Transformer transformer) {
-        List<DOMResult> results = new ArrayList<DOMResult>();
+        List<DocumentFragment> results = new ArrayList<DocumentFragment>();
         List<Element> newElements = new ArrayList<Element>();
 
-        // Transform all matched elements
+        // Transform all matched elements directly into fragments of the owner
+        // document, avoiding an intermediary document and a deep import
         try {
             for (Element element : get()) {
-                DOMResult result = new DOMResult();
-                transformer.transform(new DOMSource(element), result);
+                DocumentFragment result = element.getOwnerDocument().createDocumentFragment();
+                transformer.transform(new DOMSource(element), new DOMResult(result));
                 results.add(result);
             }
         }
@@ -1823,57 +2353,122 @@ class Impl implements Match {
             throw new RuntimeException(e);
         }
 
-        // Replace all matched elements by their resulting transformations
+        // Check all transformations before modifying the document, such that
+        // a failure doesn't leave it half-changed
         for (int i = 0; i < size(); i++) {
-            Element element = get(i);
-            Element result = ((Document) results.get(i).getNode()).getDocumentElement();
+            Node parent = get(i).getParentNode();
+
+            if (parent != null && parent.getNodeType() == Node.DOCUMENT_NODE) {
+                checkDocumentElement(results.get(i));
+            }
+        }
+
+        // Replace all matched elements by their resulting transformations
+        try {
+            for (int i = 0; i < size(); i++) {
+                Element element = get(i);
+                DocumentFragment result = results.get(i);
+                Node parent = element.getParentNode();
+
+                newElements.addAll(list(result.getChildNodes()));
+
+                // Documents do not accept a second element before the first
+                // one is removed. Elsewhere, the fragment is inserted first,
+                // such that a failed insertion doesn't remove the element
+                if (parent.getNodeType() == Node.DOCUMENT_NODE) {
+                    Node next = element.getNextSibling();
+
+                    parent.removeChild(element);
+                    parent.insertBefore(result, next);
+                }
+                else {
+                    parent.insertBefore(result, element);
+                    parent.removeChild(element);
+                }
+            }
+        }
+        catch (DOMException e) {
+            throw new RuntimeException(e);
+        }
+
+        return new Impl(document, namespaces).addElements(newElements);
+    }
+
+    /**
+     * Check whether a transformation result can replace the document element.
+     * Whitespace between top-level nodes is dropped, as documents cannot
+     * contain text.
+     */
+    private static final void checkDocumentElement(DocumentFragment result) {
+        int elements = 0;
+
+        for (Node node = result.getFirstChild(); node != null;) {
+            Node next = node.getNextSibling();
+
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    elements++;
+                    break;
 
-            result = (Element) document().importNode(result, true);
-            element.getParentNode().replaceChild(result, element);
-            newElements.add(result);
+                case Node.TEXT_NODE:
+                    if (node.getNodeValue().trim().length() == 0) {
+                        result.removeChild(node);
+                        break;
+                    }
+
+                    // Fall through
+                case Node.CDATA_SECTION_NODE:
+                    throw new RuntimeException(new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                        "The document element cannot be replaced by text"));
+            }
+
+            node = next;
         }
 
-        return new Impl(document).addElements(newElements);
+        if (elements != 1) {
+            throw new RuntimeException(new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                "The document element must be replaced by exactly one element, not " + elements));
+        }
     }
 
     @Override
-    public final Impl transform(Source transformer) {
+    public final Impl transform(Templates transformer) {
         try {
-            return transform(TransformerFactory.newInstance().newTransformer(transformer));
+            return transform(transformer.newTransformer());
         }
         catch (TransformerConfigurationException e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public final Impl transform(Source transformer) {
+        return transform(TemplatesCache.templates(transformer));
+    }
+
     @Override
     public final Impl transform(InputStream transformer) {
-        return transform(new StreamSource(transformer));
+        return transform(TemplatesCache.templates(transformer));
     }
 
     @Override
     public final Impl transform(Reader transformer) {
-        return transform(new StreamSource(transformer));
+        return transform(TemplatesCache.templates(transformer));
     }
 
     @Override
     public final Impl transform(URL transformer) {
-        try {
-            return transform(transformer.openStream());
-        }
-        catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return transform(TemplatesCache.templates(transformer));
     }
 
     @Override
     public final Impl transform(File transformer) {
-        return transform(new StreamSource(transformer));
+        return transform(TemplatesCache.templates(transformer));
     }
 
     @Override
     public final Impl transform(String transformer) {
-        return transform(new StreamSource(new File(transformer)));
+        return transform(TemplatesCache.templates(new File(transformer)));
     }
 
     // -------------------------------------------------------------------------
@@ -1959,7 +2554,88 @@ class Impl implements Match {
     /**
      * A selector pattern that can be evaluated using standard DOM API
      */
-    public static final Pattern SIMPLE_SELECTOR = Pattern.compile("\\*|[\\w\\-]+");
+    public static final Pattern SIMPLE_SELECTOR    = Pattern.compile("\\*|[\\w\\-]+");
+
+    /**
+     * A namespaced selector pattern that can be evaluated using DOM Level 2
+     * API
+     */
+    public static final Pattern NAMESPACE_SELECTOR = Pattern.compile("(\\*|[\\w\\-]*)\\|(\\*|[\\w\\-]+)");
+
+    /**
+     * Get a filter for a selector. Unlike {@link JOOX#selector(String)}, this
+     * resolves namespace prefixes bound to this match.
+     */
+    private final Filter selector(String selector) {
+        if (selector != null) {
+            Matcher matcher = NAMESPACE_SELECTOR.matcher(selector);
+
+            if (matcher.matches()) {
+                return JOOX.tag(namespaceURI(matcher.group(1)), matcher.group(2));
+            }
+        }
+
+        return JOOX.selector(selector);
+    }
+
+    /**
+     * Resolve the namespace URI of a selector's namespace prefix.
+     * <code>"*"</code> stands for any namespace and <code>""</code> for no
+     * namespace.
+     */
+    private final String namespaceURI(String prefix) {
+        if ("*".equals(prefix)) {
+            return "*";
+        }
+        else if ("".equals(prefix)) {
+            return null;
+        }
+        else if (namespaces != null) {
+            return namespaces.resolve(prefix);
+        }
+        else {
+            return new NamespaceContextImpl(Collections.<String, String> emptyMap()).resolve(prefix);
+        }
+    }
+
+    /**
+     * A task unmarshalling a chunk of elements into a shared result array,
+     * using a single {@link Unmarshaller}
+     */
+    private static class UnmarshalTask<T> implements Callable<Void> {
+
+        private final Class<T>      type;
+        private final List<Element> elements;
+        private final Object[]      result;
+        private final int           offset;
+
+        UnmarshalTask(Class<T> type, List<Element> elements, Object[] result, int offset) {
+            this.type = type;
+            this.elements = elements;
+            this.result = result;
+            this.offset = offset;
+        }
+
+        @Override
+        public Void call() {
+            JAXBCache.Entry entry = JAXBCache.entry(type);
+            Unmarshaller unmarshaller = entry.unmarshaller();
+
+            try {
+                for (int i = 0; i < elements.size(); i++) {
+                    result[offset + i] = unmarshaller.unmarshal(new DOMSource(elements.get(i)), type).getValue();
+                }
+            }
+            catch (JAXBException e) {
+                throw new DataBindingException(e);
+            }
+            finally {
+                entry.release(unmarshaller);
+            }
+
+            return null;
+        }
+    }
 
     /**
      * A simple variable resolver mapping variable names to their respective
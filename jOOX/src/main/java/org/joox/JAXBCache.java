@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.beans.Introspector;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+
+/**
+ * A cache for {@link JAXBContext} instances and pooled {@link Marshaller} and
+ * {@link Unmarshaller} objects.
+ * <p>
+ * Creating a <code>JAXBContext</code> is very expensive, whereas contexts are
+ * thread-safe and can be shared. Marshallers and unmarshallers are cheap in
+ * comparison, but they are not thread-safe. This cache keeps a bounded number
+ * of contexts per set of bound classes, and a bounded pool of idle
+ * marshallers and unmarshallers per context.
+ *
+ * @author Lukas Eder
+ */
+final class JAXBCache {
+
+    /**
+     * The maximum number of cached contexts
+     */
+    private static final int                                 MAX_CONTEXTS = 64;
+
+    /**
+     * The maximum number of idle marshallers and unmarshallers per context
+     */
+    private static final int                                 MAX_POOLED   = 16;
+
+    /**
+     * The cached contexts, keyed by the list of bound classes
+     */
+    private static final BoundedCache<List<Class<?>>, Entry> CACHE        = new BoundedCache<List<Class<?>>, Entry>(MAX_CONTEXTS);
+
+    /**
+     * Get a cached {@link Entry} for a set of bound classes, creating a new
+     * {@link JAXBContext} if necessary.
+     */
+    static final Entry entry(Class<?>... types) {
+        List<Class<?>> key = Arrays.<Class<?>>asList(types);
+        Entry entry = CACHE.get(key);
+
+        if (entry == null) {
+            try {
+                entry = new Entry(JAXBContext.newInstance(types));
+            }
+            catch (JAXBException e) {
+                throw new DataBindingException(e);
+            }
+
+            entry = CACHE.put(key, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Get a cached {@link JAXBContext} for a set of bound classes
+     */
+    static final JAXBContext context(Class<?>... types) {
+        return entry(types).context;
+    }
+
+    /**
+     * Unmarshal a source into a JAXB-annotated type.
+     * <p>
+     * This has the same semantics as
+     * {@link javax.xml.bind.JAXB#unmarshal(Source, Class)}
+     */
+    static final <T> T unmarshal(Source source, Class<T> type) {
+        Entry entry = entry(type);
+        Unmarshaller unmarshaller = entry.unmarshaller();
+
+        try {
+            return unmarshaller.unmarshal(source, type).getValue();
+        }
+        catch (JAXBException e) {
+            throw new DataBindingException(e);
+        }
+        finally {
+            entry.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Marshal a JAXB-annotated object into a result.
+     * <p>
+     * This has the same semantics as
+     * {@link javax.xml.bind.JAXB#marshal(Object, Result)}, except that an XML
+     * fragment (without XML declaration) can be requested.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static final void marshal(Object value, Result result, boolean fragment) {
+        Entry entry = entry(value.getClass());
+        Marshaller marshaller = entry.marshaller();
+
+        try {
+            Object object = value;
+
+            // Types that are not annotated with @XmlRootElement are wrapped
+            // in a JAXBElement, just like javax.xml.bind.JAXB does it
+            if (!entry.context.createJAXBIntrospector().isElement(value)) {
+                Class<?> type = value.getClass();
+                QName name = new QName(Introspector.decapitalize(type.getSimpleName()));
+                object = new JAXBElement(name, type, value);
+            }
+
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, fragment);
+            marshaller.marshal(object, result);
+        }
+        catch (JAXBException e) {
+            throw new DataBindingException(e);
+        }
+        finally {
+            entry.release(marshaller);
+        }
+    }
+
+    /**
+     * A cached {@link JAXBContext} and its pooled marshallers and
+     * unmarshallers
+     */
+    static final class Entry {
+
+        final JAXBContext                 context;
+        private final Queue<Marshaller>   marshallers;
+        private final Queue<Unmarshaller> unmarshallers;
+        private final AtomicInteger       marshallerCount;
+        private final AtomicInteger       unmarshallerCount;
+
+        Entry(JAXBContext context) {
+            this.context = context;
+            this.marshallers = new ConcurrentLinkedQueue<Marshaller>();
+            this.unmarshallers = new ConcurrentLinkedQueue<Unmarshaller>();
+            this.marshallerCount = new AtomicInteger();
+            this.unmarshallerCount = new AtomicInteger();
+        }
+
+        /**
+         * Borrow a marshaller from the pool. Marshallers must be returned
+         * using {@link #release(Marshaller)}
+         */
+        Marshaller marshaller() {
+            Marshaller marshaller = marshallers.poll();
+
+            if (marshaller != null) {
+                marshallerCount.decrementAndGet();
+                return marshaller;
+            }
+
+            try {
+                return context.createMarshaller();
+            }
+            catch (JAXBException e) {
+                throw new DataBindingException(e);
+            }
+        }
+
+        /**
+         * Borrow an unmarshaller from the pool. Unmarshallers must be returned
+         * using {@link #release(Unmarshaller)}
+         */
+        Unmarshaller unmarshaller() {
+            Unmarshaller unmarshaller = unmarshallers.poll();
+
+            if (unmarshaller != null) {
+                unmarshallerCount.decrementAndGet();
+                return unmarshaller;
+            }
+
+            try {
+                return context.createUnmarshaller();
+            }
+            catch (JAXBException e) {
+                throw new DataBindingException(e);
+            }
+        }
+
+        /**
+         * Return a marshaller to the pool
+         */
+        void release(Marshaller marshaller) {
+            if (marshallerCount.incrementAndGet() <= MAX_POOLED) {
+                marshallers.offer(marshaller);
+            }
+            else {
+                marshallerCount.decrementAndGet();
+            }
+        }
+
+        /**
+         * Return an unmarshaller to the pool
+         */
+        void release(Unmarshaller unmarshaller) {
+            if (unmarshallerCount.incrementAndGet() <= MAX_POOLED) {
+                unmarshallers.offer(unmarshaller);
+            }
+            else {
+                unmarshallerCount.decrementAndGet();
+            }
+        }
+    }
+
+    private JAXBCache() {}
+}
@@ -36,35 +36,40 @@
 package org.joox;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringWriter;
-import java.lang.reflect.Array;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import javax.xml.bind.DataBindingException;
-import javax.xml.bind.JAXB;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamResult;
 
+import org.joox.compact.CompactDOM;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
@@ -100,7 +105,7 @@ public final class JOOX {
 
         if (object != null) {
             Result result = new DOMResult(document);
-            JAXB.marshal(object, result);
+            JAXBCache.marshal(object, result, false);
         }
 
         return $(document);
@@ -148,6 +153,83 @@ public final class JOOX {
         return $(name).append(content);
     }
 
+    /**
+     * Describe an element tree, which can be created in a single document or
+     * streamed without a DOM
+     *
+     * @see Tree
+     */
+    public static Tree tree(String name) {
+        return new Tree(name, null);
+    }
+
+    /**
+     * Describe an element tree with text content, which can be created in a
+     * single document or streamed without a DOM
+     * <p>
+     * Unlike in {@link #$(String, String)}, the content is always text and
+     * never parsed as XML
+     *
+     * @see Tree
+     */
+    public static Tree tree(String name, String text) {
+        return new Tree(name, text);
+    }
+
+    /**
+     * Describe an element tree with child trees, which can be created in a
+     * single document or streamed without a DOM
+     *
+     * @see Tree
+     */
+    public static Tree tree(String name, Tree... children) {
+        return new Tree(name, null, children);
+    }
+
+    /**
+     * Create a write-through cursor generating XML in document order into a
+     * writer, without building a DOM
+     * <p>
+     * No XML declaration is written.
+     *
+     * @see Cursor
+     */
+    public static Cursor cursor(Writer writer) {
+        try {
+            return cursor(XMLOutputFactory.newInstance().createXMLStreamWriter(writer));
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a write-through cursor generating an UTF-8 encoded XML document
+     * in document order into a stream, without building a DOM
+     *
+     * @see Cursor
+     */
+    public static Cursor cursor(OutputStream stream) {
+        try {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(stream, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            return cursor(writer);
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a write-through cursor generating XML in document order into an
+     * {@link XMLStreamWriter}, without building a DOM
+     *
+     * @see Cursor
+     */
+    public static Cursor cursor(XMLStreamWriter writer) {
+        return new Cursor(writer);
+    }
+
     /**
      * Wrap a DOM document in a jOOX {@link Match} element set
      */
@@ -331,19 +413,8 @@ public final class JOOX {
     /**
      * A filter that returns true on elements at given iteration indexes
      */
-    public static FastFilter at(final int... indexes) {
-        return new FastFilter() {
-            @Override
-            public boolean filter(Context context) {
-                for (int i : indexes) {
-                    if (i == context.elementIndex()) {
-                        return true;
-                    }
-                }
-
-                return false;
-            }
-        };
+    public static FastFilter at(int... indexes) {
+        return new At(indexes);
     }
 
     /**
@@ -423,6 +494,19 @@ public final class JOOX {
      * <td>an E element with ID equal to "myid".</td>
      * </tr>
      * <tr>
+     * <td>ns|E</td>
+     * <td>an E element in the namespace bound to the prefix "ns" using
+     * {@link Match#namespace(String, String)}</td>
+     * </tr>
+     * <tr>
+     * <td>*|E</td>
+     * <td>an E element in any namespace, or without a namespace</td>
+     * </tr>
+     * <tr>
+     * <td>|E</td>
+     * <td>an E element without a namespace</td>
+     * </tr>
+     * <tr>
      * <td>E F</td>
      * <td>an F element descendant of an E element</td>
      * </tr>
@@ -447,6 +531,17 @@ public final class JOOX {
         return tag(selector);
     }
 
+    /**
+     * Compile a set of CSS selectors, which can be evaluated in a single tree
+     * walk using {@link Match#findAll(SelectorSet)}
+     *
+     * @see #selector(String)
+     * @see SelectorSet
+     */
+    public static SelectorSet selectors(String... selectors) {
+        return new SelectorSet(selectors);
+    }
+
     /**
      * A filter that returns all elements with a given tag name
      */
@@ -455,10 +550,55 @@ public final class JOOX {
             return none();
         }
         else {
+            final String name = tagName.intern();
+
+            return new FastFilter() {
+                @Override
+                public boolean filter(Context context) {
+                    return name.equals(context.element().getTagName());
+                }
+            };
+        }
+    }
+
+    /**
+     * A filter that returns all elements with a given namespace URI and local
+     * name.
+     * <p>
+     * Both arguments may be <code>"*"</code> to match any namespace URI or
+     * local name. A <code>null</code> or empty namespace URI matches elements
+     * without a namespace. This only matches elements of namespace-aware
+     * documents.
+     *
+     * @see #builder(boolean)
+     */
+    public static FastFilter tag(final String namespaceURI, final String localName) {
+        if (localName == null || localName.equals("")) {
+            return none();
+        }
+        else {
+            final boolean anyNamespace = "*".equals(namespaceURI);
+            final boolean anyName = "*".equals(localName);
+            final String uri = "".equals(namespaceURI) || namespaceURI == null ? null : namespaceURI.intern();
+            final String name = localName.intern();
+
             return new FastFilter() {
                 @Override
                 public boolean filter(Context context) {
-                    return tagName.equals(context.element().getTagName());
+                    Element element = context.element();
+
+                    if (!anyName && !name.equals(element.getLocalName())) {
+                        return false;
+                    }
+                    else if (anyNamespace) {
+                        return true;
+                    }
+                    else if (uri == null) {
+                        return element.getNamespaceURI() == null;
+                    }
+                    else {
+                        return uri.equals(element.getNamespaceURI());
+                    }
                 }
             };
         }
@@ -467,18 +607,23 @@ public final class JOOX {
     /**
      * A filter that returns all elements whose text content matches a given
      * regex
+     * <p>
+     * The regex is compiled only once. It is matched against the element's
+     * text nodes directly, without concatenating them.
      *
      * @see Pattern#matches(String, CharSequence)
      */
-    public static FastFilter matchText(final String regex) {
+    public static FastFilter matchText(String regex) {
         if (regex == null || regex.equals("")) {
             return none();
         }
         else {
+            final Pattern pattern = PatternCache.pattern(regex);
+
             return new FastFilter() {
                 @Override
                 public boolean filter(Context context) {
-                    return $(context).text().matches(regex);
+                    return pattern.matcher(TextContent.of(context.element())).matches();
                 }
             };
         }
@@ -486,18 +631,22 @@ public final class JOOX {
 
     /**
      * A filter that returns all elements whose tag name matches a given regex
+     * <p>
+     * The regex is compiled only once.
      *
      * @see Pattern#matches(String, CharSequence)
      */
-    public static FastFilter matchTag(final String regex) {
+    public static FastFilter matchTag(String regex) {
         if (regex == null || regex.equals("")) {
             return none();
         }
         else {
+            final Pattern pattern = PatternCache.pattern(regex);
+
             return new FastFilter() {
                 @Override
                 public boolean filter(Context context) {
-                    return context.element().getTagName().matches(regex);
+                    return pattern.matcher(context.element().getTagName()).matches();
                 }
             };
         }
@@ -516,10 +665,12 @@ public final class JOOX {
             };
         }
         else {
+            final String attributeName = name.intern();
+
             return new FastFilter() {
                 @Override
                 public boolean filter(Context context) {
-                    return context.element().hasAttribute(name);
+                    return context.element().hasAttribute(attributeName);
                 }
             };
         }
@@ -530,49 +681,106 @@ public final class JOOX {
      * given value
      */
     public static FastFilter attr(final String name, final String... values) {
-        final List<String> list = Arrays.asList(values);
-
         if (name == null || name.equals("")) {
             return attr(name);
         }
+
+        final String attributeName = name.intern();
+
+        // Large value sets are looked up in constant time
+        if (values.length > 8) {
+            final Set<String> set = new HashSet<String>(Arrays.asList(values));
+
+            return new FastFilter() {
+                @Override
+                public boolean filter(Context context) {
+                    return set.contains(context.element().getAttribute(attributeName));
+                }
+            };
+        }
         else {
+            final List<String> list = Arrays.asList(values);
+
             return new FastFilter() {
                 @Override
                 public boolean filter(Context context) {
-                    return list.contains(context.element().getAttribute(name));
+                    return list.contains(context.element().getAttribute(attributeName));
                 }
             };
         }
     }
 
     /**
-     * Combine filters
+     * A filter that returns all elements with a given attribute starting with
+     * a given prefix
      */
-    public static Filter and(final Filter... filters) {
-        return new Filter() {
+    public static FastFilter attrPrefix(String name, final String prefix) {
+        if (name == null || name.equals("") || prefix == null) {
+            return none();
+        }
+
+        final String attributeName = name.intern();
+
+        return new FastFilter() {
             @Override
             public boolean filter(Context context) {
-                for (Filter filter : filters) {
-                    if (!filter.filter(context)) {
-                        return false;
-                    }
-                }
+                Attr attr = context.element().getAttributeNode(attributeName);
+                return attr != null && attr.getValue().startsWith(prefix);
+            }
+        };
+    }
+
+    /**
+     * A filter that returns all elements with a given attribute ending with a
+     * given suffix
+     */
+    public static FastFilter attrSuffix(String name, final String suffix) {
+        if (name == null || name.equals("") || suffix == null) {
+            return none();
+        }
+
+        final String attributeName = name.intern();
 
-                return true;
+        return new FastFilter() {
+            @Override
+            public boolean filter(Context context) {
+                Attr attr = context.element().getAttributeNode(attributeName);
+                return attr != null && attr.getValue().endsWith(suffix);
             }
         };
     }
 
     /**
-     * Combine filters
+     * A filter that returns all elements with a given numeric attribute within
+     * a range
+     * <p>
+     * Both bounds are inclusive. A <code>null</code> bound leaves the range
+     * open on that side. Attributes that cannot be parsed as numbers are not
+     * matched.
      */
-    public static Filter or(final Filter... filters) {
-        return new Filter() {
+    public static FastFilter attrRange(String name, Number min, Number max) {
+        if (name == null || name.equals("")) {
+            return none();
+        }
+
+        final String attributeName = name.intern();
+        final double lower = min == null ? Double.NEGATIVE_INFINITY : min.doubleValue();
+        final double upper = max == null ? Double.POSITIVE_INFINITY : max.doubleValue();
+
+        return new FastFilter() {
             @Override
             public boolean filter(Context context) {
-                for (Filter filter : filters) {
-                    if (filter.filter(context)) {
-                        return true;
+                Attr attr = context.element().getAttributeNode(attributeName);
+
+                if (attr != null) {
+                    String value = attr.getValue().trim();
+
+                    // Obviously illegal values are rejected without throwing
+                    // any exception. Illegal values are NaN, which is never
+                    // within the range
+                    if (Util.isNumeric(value)) {
+                        double number = Util.parseDouble(value, 0, value.length(), Double.NaN);
+                        return lower <= number && number <= upper;
                     }
                 }
 
@@ -581,16 +789,36 @@ public final class JOOX {
         };
     }
 
+    /**
+     * Combine filters
+     * <p>
+     * If all filters are {@link FastFilter}s, the result is a
+     * <code>FastFilter</code> as well. Filters are reordered by their measured
+     * cost and selectivity, so they should not have any side-effects.
+     */
+    public static Filter and(Filter... filters) {
+        return CompositeFilter.and(filters);
+    }
+
+    /**
+     * Combine filters
+     * <p>
+     * If all filters are {@link FastFilter}s, the result is a
+     * <code>FastFilter</code> as well. Filters are reordered by their measured
+     * cost and selectivity, so they should not have any side-effects.
+     */
+    public static Filter or(Filter... filters) {
+        return CompositeFilter.or(filters);
+    }
+
     /**
      * Inverse a filter
+     * <p>
+     * If the filter is a {@link FastFilter}, the result is a
+     * <code>FastFilter</code> as well.
      */
-    public static Filter not(final Filter filter) {
-        return new Filter() {
-            @Override
-            public boolean filter(Context context) {
-                return !filter.filter(context);
-            }
-        };
+    public static Filter not(Filter filter) {
+        return CompositeFilter.not(filter);
     }
 
     /**
@@ -642,18 +870,9 @@ public final class JOOX {
             @Override
             public String content(Context context) {
                 if (marshalled == null) {
-                    try {
-                        JAXBContext jaxb = JAXBContext.newInstance(value.getClass());
-                        Marshaller marshaller = jaxb.createMarshaller();
-                        marshaller.setProperty("jaxb.fragment", true);
-
-                        StringWriter writer = new StringWriter();
-                        marshaller.marshal(value, writer);
-                        marshalled = writer.toString();
-                    }
-                    catch (JAXBException e) {
-                        throw new DataBindingException(e);
-                    }
+                    StringWriter writer = new StringWriter();
+                    JAXBCache.marshal(value, new StreamResult(writer), true);
+                    marshalled = writer.toString();
                 }
 
                 return marshalled;
@@ -731,8 +950,23 @@ public final class JOOX {
      * Get a document builder
      */
     public static DocumentBuilder builder() {
+        return builder(false);
+    }
+
+    /**
+     * Get a document builder, which may be namespace-aware.
+     * <p>
+     * Namespace-aware builders create elements that know their namespace URI
+     * and local name. This is needed for namespace-aware selectors, such as
+     * <code>$(builder(true).parse(file)).namespace("s", uri).find("s|Body")</code>,
+     * and for XPath expressions using namespace prefixes.
+     *
+     * @see Match#namespace(String, String)
+     */
+    public static DocumentBuilder builder(boolean namespaceAware) {
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            DocumentBuilderFactory factory = Util.documentBuilderFactory();
+            factory.setNamespaceAware(namespaceAware);
             DocumentBuilder builder = factory.newDocumentBuilder();
 
             return builder;
@@ -742,32 +976,156 @@ public final class JOOX {
         }
     }
 
-    // ---------------------------------------------------------------------
-    // Other utilities
-    // ---------------------------------------------------------------------
+    /**
+     * Read a compact, immutable document from a file
+     *
+     * @see #compact(InputSource, boolean)
+     */
+    public static Document compact(File file) throws SAXException, IOException {
+        return compact(new InputSource(file.toURI().toASCIIString()), false);
+    }
+
+    /**
+     * Read a compact, immutable document from a stream
+     *
+     * @see #compact(InputSource, boolean)
+     */
+    public static Document compact(InputStream stream) throws SAXException, IOException {
+        return compact(new InputSource(stream), false);
+    }
+
+    /**
+     * Read a compact, immutable document from a reader
+     *
+     * @see #compact(InputSource, boolean)
+     */
+    public static Document compact(Reader reader) throws SAXException, IOException {
+        return compact(new InputSource(reader), false);
+    }
+
+    /**
+     * Read a compact, immutable document, which may be namespace-aware.
+     * <p>
+     * Compact documents store all nodes, names and texts in a few shared
+     * arrays, rather than in one object per node, attribute and text. They
+     * need considerably less memory than documents created by
+     * {@link #builder()}, which is useful when many documents are held in
+     * memory only for lookups. Wrap them using {@link #$(Document)} to use
+     * jOOX's read API, such as {@link Match#find(String)},
+     * {@link Match#children()}, {@link Match#attr(String)},
+     * {@link Match#text()} or {@link Match#xpath(String)}. Any attempt to
+     * modify a compact document results in a {@link org.w3c.dom.DOMException}.
+     */
+    public static Document compact(InputSource source, boolean namespaceAware) throws SAXException, IOException {
+        return CompactDOM.parse(source, namespaceAware);
+    }
+
+    /**
+     * Create a compact, immutable copy of any document
+     *
+     * @see #compact(InputSource, boolean)
+     */
+    public static Document compact(Document document) {
+        return CompactDOM.copy(document);
+    }
+
+    /**
+     * Store a document in a file, using a flat binary layout that can be
+     * queried without deserialising it.
+     * <p>
+     * Documents that are not compact are copied into a compact document
+     * first, see {@link #compact(Document)}.
+     *
+     * @see #compact(InputSource, boolean)
+     * @see #map(File)
+     */
+    public static void store(Document document, File file) throws IOException {
+        OutputStream stream = new FileOutputStream(file);
+
+        try {
+            CompactDOM.write(document, stream);
+        }
+        finally {
+            stream.close();
+        }
+    }
 
-    private static final Set<String> TRUE_VALUES;
-    private static final Set<String> FALSE_VALUES;
+    /**
+     * Memory-map a compact document stored with {@link #store(Document, File)}.
+     * <p>
+     * This is near-instant, regardless of the document's size. The document's
+     * nodes, attributes and texts are read from the file system cache when
+     * they are accessed, and add almost nothing to the Java heap. Only the
+     * document's tag and attribute names are read onto the heap.
+     */
+    public static Document map(File file) throws IOException {
+        return CompactDOM.map(file);
+    }
 
-    static {
-        TRUE_VALUES = new HashSet<String>();
-        FALSE_VALUES = new HashSet<String>();
+    /**
+     * Read a compact document stored with {@link #store(Document, File)} from
+     * a buffer, without copying it.
+     * <p>
+     * If the buffer is a direct buffer, the document resides off the Java
+     * heap, like a memory-mapped document.
+     *
+     * @see #map(File)
+     */
+    public static Document map(ByteBuffer buffer) {
+        return CompactDOM.read(buffer);
+    }
 
-        TRUE_VALUES.add("1");
-        TRUE_VALUES.add("y");
-        TRUE_VALUES.add("yes");
-        TRUE_VALUES.add("true");
-        TRUE_VALUES.add("on");
-        TRUE_VALUES.add("enabled");
+    /**
+     * Read a document snapshot written by {@link Match#snapshot(OutputStream)}
+     * or {@link #store(Document, File)} from a stream.
+     * <p>
+     * Loading a snapshot is considerably faster than parsing the equivalent
+     * XML, as no characters need to be decoded, tokenised or validated. The
+     * resulting document is compact and immutable. Use {@link #map(File)} to
+     * load snapshots from files without copying them onto the heap.
+     */
+    public static Document snapshot(InputStream stream) throws IOException {
+        return CompactDOM.read(stream);
+    }
 
-        FALSE_VALUES.add("0");
-        FALSE_VALUES.add("n");
-        FALSE_VALUES.add("no");
-        FALSE_VALUES.add("false");
-        FALSE_VALUES.add("off");
-        FALSE_VALUES.add("disabled");
+    /**
+     * Transform a source into a result using an XSLT stylesheet, without
+     * creating a DOM document for the source.
+     * <p>
+     * This is useful for applying stylesheets to documents that are too large
+     * to be held in memory, e.g. by passing a
+     * {@link javax.xml.transform.stream.StreamSource} and a
+     * {@link javax.xml.transform.stream.StreamResult}. Depending on the
+     * stylesheet, the transformer implementation may still choose to buffer
+     * the input.
+     *
+     * @see Match#transform(Templates)
+     */
+    public static void transform(Templates transformer, Source in, Result out) {
+        try {
+            transformer.newTransformer().transform(in, out);
+        }
+        catch (TransformerException e) {
+            throw new RuntimeException(e);
+        }
     }
 
+    /**
+     * Transform a source into a result using an XSLT stylesheet, without
+     * creating a DOM document for the source.
+     * <p>
+     * Compiled stylesheets are cached, just as in {@link Match#transform(Source)}
+     *
+     * @see #transform(Templates, Source, Result)
+     */
+    public static void transform(Source transformer, Source in, Result out) {
+        transform(TemplatesCache.templates(transformer), in, out);
+    }
+
+    // ---------------------------------------------------------------------
+    // Other utilities
+    // ---------------------------------------------------------------------
+
     /**
      * Convert a string value to any of these types:
      * <ul>
@@ -854,176 +1212,12 @@ public final class JOOX {
      * delimited by quotes as well.</li>
      * </ul>
      * <p>
-     * All other values evaluate to <code>null</code>
+     * All other values evaluate to <code>null</code>, unless a custom
+     * {@link Converter} has been registered for the type using
+     * {@link #register(Class, Converter)}
      */
-    @SuppressWarnings("unchecked")
     public static <T> T convert(String value, Class<T> type) {
-        if (value == null && type.isPrimitive()) {
-            value = "0";
-        }
-
-        if (value == null) {
-            return null;
-        }
-
-        // [#24] TODO: base64-decode binary data
-        // else if (type == byte[].class) {
-        // }
-
-        // [#28] Array conversion will recurse for split values
-        else if (type.isArray()) {
-            Class<?> component = type.getComponentType();
-            List<String> split = Util.split(value);
-            return (T) convert(split, component).toArray((Object[]) Array.newInstance(component, split.size()));
-        }
-
-        // Strings are not converted
-        else if (type == String.class) {
-            return (T) value;
-        }
-
-        // All type can be converted to Object
-        else if (type == Object.class) {
-            return (T) value;
-        }
-
-        // Various number types
-        else if (type == Byte.class || type == byte.class) {
-            try {
-                return (T) Byte.valueOf(new BigDecimal(value).byteValue());
-            }
-            catch (Exception e) {
-                return (T) ((type == Byte.class) ? null : (byte) 0);
-            }
-        }
-        else if (type == Short.class || type == short.class) {
-            try {
-                return (T) Short.valueOf(new BigDecimal(value).shortValue());
-            }
-            catch (Exception e) {
-                return (T) ((type == Short.class) ? null : (short) 0);
-            }
-        }
-        else if (type == Integer.class || type == int.class) {
-            try {
-                return (T) Integer.valueOf(new BigDecimal(value).intValue());
-            }
-            catch (Exception e) {
-                return (T) ((type == Integer.class) ? null : 0);
-            }
-        }
-        else if (type == Long.class || type == long.class) {
-            try {
-                return (T) Long.valueOf(new BigDecimal(value).longValue());
-            }
-            catch (Exception e) {
-                return (T) ((type == Long.class) ? null : 0L);
-            }
-        }
-        else if (type == Float.class || type == float.class) {
-            try {
-                return (T) Float.valueOf(value);
-            }
-            catch (Exception e) {
-                return (T) ((type == Float.class) ? null : 0.0f);
-            }
-        }
-        else if (type == Double.class || type == double.class) {
-            try {
-                return (T) Double.valueOf(value);
-            }
-            catch (Exception e) {
-                return (T) ((type == Double.class) ? null : 0.0);
-            }
-        }
-        else if (type == BigDecimal.class) {
-            try {
-                return (T) new BigDecimal(value);
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == BigInteger.class) {
-            try {
-                return (T) new BigDecimal(value).toBigInteger();
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-
-        // Booleans have a set of allowed values
-        else if (type == Boolean.class || type == boolean.class) {
-            String s = value.toLowerCase();
-
-            if (TRUE_VALUES.contains(s)) {
-                return (T) Boolean.TRUE;
-            }
-            else if (FALSE_VALUES.contains(s)) {
-                return (T) Boolean.FALSE;
-            }
-            else {
-                return (T) ((type == Boolean.class) ? null : false);
-            }
-        }
-
-        // [#29] TODO: Date-time types
-        else if (type == java.util.Date.class) {
-            try {
-                return (T) Util.parseDate(value);
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.util.Calendar.class) {
-            try {
-                Calendar cal = Calendar.getInstance();
-                cal.setTime(Util.parseDate(value));
-                return (T) cal;
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.util.GregorianCalendar.class) {
-            try {
-                Calendar cal = new GregorianCalendar();
-                cal.setTime(Util.parseDate(value));
-                return (T) cal;
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.sql.Timestamp.class) {
-            try {
-                return (T) new java.sql.Timestamp(Util.parseDate(value).getTime());
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.sql.Date.class) {
-            try {
-                return (T) new java.sql.Date(Util.parseDate(value).getTime());
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.sql.Time.class) {
-            try {
-                return (T) new java.sql.Time(Util.parseDate(value).getTime());
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-
-        // All other types are ignored
-        return null;
+        return ConverterRegistry.converter(type).convert(value);
     }
 
     /**
@@ -1032,19 +1226,75 @@ public final class JOOX {
      * @see #convert(String, Class)
      */
     public static <T> List<T> convert(List<String> values, Class<T> type) {
-        List<T> result = new ArrayList<T>();
+        Converter<T> converter = ConverterRegistry.converter(type);
+        List<T> result = new ArrayList<T>(values.size());
 
         for (String value : values) {
-            result.add(convert(value, type));
+            result.add(converter.convert(value));
         }
 
         return result;
     }
 
+    /**
+     * Get the {@link Converter} used by {@link #convert(String, Class)} for a
+     * given type.
+     * <p>
+     * Converters are resolved only once per type. Code converting many values
+     * to the same type can look up the converter once and then reuse it.
+     */
+    public static <T> Converter<T> converter(Class<T> type) {
+        return ConverterRegistry.converter(type);
+    }
+
+    /**
+     * Register a custom {@link Converter} for a given type.
+     * <p>
+     * The registered converter is used by {@link #convert(String, Class)} and
+     * all methods relying on it, such as {@link Match#text(Class)} or
+     * {@link Match#attrs(String, Class)}. It may replace a built-in converter.
+     * Registered converters are also used for array component types. Passing
+     * a <code>null</code> converter resets the type to its built-in converter.
+     */
+    public static <T> void register(Class<T> type, Converter<? extends T> converter) {
+        ConverterRegistry.register(type, converter);
+    }
+
     // ---------------------------------------------------------------------
     // Static utilities
     // ---------------------------------------------------------------------
 
+    /**
+     * A filter returning elements at given iteration indexes.
+     * <p>
+     * The indexes are kept sorted, such that clients knowing the iteration
+     * order can access the requested positions directly, rather than applying
+     * this filter to every element.
+     */
+    static final class At implements FastFilter {
+        final int[] indexes;
+
+        At(int... indexes) {
+            int[] sorted = indexes.clone();
+            Arrays.sort(sorted);
+
+            // Negative indexes never match, and duplicates are irrelevant
+            int length = 0;
+            for (int i : sorted) {
+                if (i >= 0 && (length == 0 || sorted[length - 1] != i)) {
+                    sorted[length++] = i;
+                }
+            }
+
+            this.indexes = Arrays.copyOf(sorted, length);
+        }
+
+        @Override
+        public boolean filter(Context context) {
+            return Arrays.binarySearch(indexes, context.elementIndex()) >= 0;
+        }
+    }
+
     private static final FastFilter NONE = new FastFilter() {
         @Override
         public boolean filter(Context context) {
@@ -0,0 +1,324 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+import org.w3c.dom.events.MutationEvent;
+
+/**
+ * An undo journal recording all mutations of a document during a
+ * {@link Match#batch(Batch)}.
+ * <p>
+ * Mutations are observed through DOM Level 2 mutation events, and recorded
+ * along with the information needed to revert them. Rolling back reverts them
+ * in reverse order, which restores the original nodes, rather than copies.
+ * Batches may be nested, in which case a failing inner batch rolls back only
+ * its own mutations.
+ *
+ * @author Lukas Eder
+ */
+final class Journal implements EventListener {
+
+    private static final String   KEY       = Journal.class.getName();
+    private static final String[] EVENTS    = {
+        "DOMNodeInserted",
+        "DOMNodeRemoved",
+        "DOMAttrModified",
+        "DOMCharacterDataModified" };
+
+    // The types of journal entries
+    private static final int      INSERTED  = 0;
+    private static final int      REMOVED   = 1;
+    private static final int      ATTRIBUTE = 2;
+    private static final int      DATA      = 3;
+    private static final int      RENAMED   = 4;
+
+    private final Document        document;
+    private final List<Entry>     entries;
+    private int                   depth;
+    private boolean               rollback;
+
+    private Journal(Document document) {
+        this.document = document;
+        this.entries = new ArrayList<Entry>();
+    }
+
+    /**
+     * Open a (possibly nested) batch on a document
+     *
+     * @throws UnsupportedOperationException If the document does not support
+     *             mutation events
+     */
+    static final Journal open(Document document) {
+        if (!(document instanceof EventTarget)) {
+            throw new UnsupportedOperationException("The document does not support mutation events: " + document);
+        }
+
+        Journal journal = (Journal) document.getUserData(KEY);
+
+        if (journal == null) {
+            journal = new Journal(document);
+            document.setUserData(KEY, journal, null);
+
+            for (String type : EVENTS) {
+                ((EventTarget) document).addEventListener(type, journal, false);
+            }
+        }
+
+        journal.depth++;
+        return journal;
+    }
+
+    /**
+     * Record the renaming of an element, which is not fully reported by
+     * mutation events.
+     * <p>
+     * Elements are either renamed in place, or replaced by a new element, in
+     * which case their children and attributes are moved silently.
+     */
+    static final void renamed(Element element, Element renamed, String namespaceURI, String name) {
+        Journal journal = (Journal) element.getOwnerDocument().getUserData(KEY);
+
+        if (journal != null && !journal.rollback) {
+            journal.entries.add(new Entry(RENAMED, element, renamed, name, namespaceURI, 0));
+        }
+    }
+
+    /**
+     * The number of mutations recorded so far
+     */
+    final int size() {
+        return entries.size();
+    }
+
+    /**
+     * Close a batch, discarding the journal if this was the outermost batch
+     */
+    final void close() {
+        if (--depth == 0) {
+            for (String type : EVENTS) {
+                ((EventTarget) document).removeEventListener(type, this, false);
+            }
+
+            document.setUserData(KEY, null, null);
+        }
+    }
+
+    /**
+     * Revert all mutations recorded after a given mark, in reverse order
+     */
+    final void rollback(int mark) {
+        rollback = true;
+
+        try {
+            for (int i = entries.size() - 1; i >= mark; i--) {
+                Entry entry = entries.remove(i);
+
+                // Replacing the document element is reported as the new
+                // element's insertion, followed by the old element's removal.
+                // As documents hold only one element, the new element has to
+                // be removed before the old one is re-inserted
+                if (entry.type == REMOVED && entry.related instanceof Document && i > mark) {
+                    Entry previous = entries.get(i - 1);
+
+                    if (previous.type == INSERTED && previous.target.getParentNode() == entry.related) {
+                        entries.remove(--i).undo();
+                    }
+                }
+
+                entry.undo();
+            }
+        }
+        finally {
+            rollback = false;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // EventListener API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final void handleEvent(Event event) {
+        if (rollback) {
+            return;
+        }
+
+        MutationEvent e = (MutationEvent) event;
+        String type = e.getType();
+        Node target = (Node) e.getTarget();
+
+        if ("DOMNodeInserted".equals(type)) {
+            entries.add(new Entry(INSERTED, target, null, null, null, 0));
+        }
+
+        // Removal events are dispatched before the node is removed
+        else if ("DOMNodeRemoved".equals(type)) {
+            entries.add(new Entry(REMOVED, target, e.getRelatedNode(), null, target.getNextSibling(), 0));
+        }
+        else if ("DOMAttrModified".equals(type)) {
+            entries.add(new Entry(ATTRIBUTE, target, e.getRelatedNode(), e.getPrevValue(), null, e.getAttrChange()));
+        }
+        else if ("DOMCharacterDataModified".equals(type)) {
+            entries.add(new Entry(DATA, target, null, e.getPrevValue(), null, 0));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Journal entries
+    // -------------------------------------------------------------------------
+
+    /**
+     * A recorded mutation, along with the information needed to revert it
+     */
+    private static final class Entry {
+
+        private final int    type;
+        private final Node   target;
+        private final Node   related;
+        private final String value;
+        private final Object previous;
+        private final int    change;
+
+        Entry(int type, Node target, Node related, String value, Object previous, int change) {
+            this.type = type;
+            this.target = target;
+            this.related = related;
+            this.value = value;
+            this.previous = previous;
+            this.change = change;
+        }
+
+        final void undo() {
+            switch (type) {
+
+                // Inserted nodes are removed again
+                case INSERTED: {
+                    if (target.getParentNode() != null) {
+                        target.getParentNode().removeChild(target);
+                    }
+
+                    break;
+                }
+
+                // Removed nodes are re-inserted before their former next
+                // sibling, which has been restored already at this point
+                case REMOVED: {
+                    related.insertBefore(target, (Node) previous);
+                    break;
+                }
+
+                case ATTRIBUTE: {
+                    Element element = (Element) target;
+                    Attr attr = (Attr) related;
+
+                    if (change == MutationEvent.ADDITION) {
+                        element.removeAttributeNode(attr);
+                    }
+                    else if (change == MutationEvent.MODIFICATION) {
+                        attr.setValue(value);
+                    }
+
+                    // Removed attributes may have been moved to another
+                    // element in the meantime, e.g. by renaming an element
+                    else {
+                        if (attr.getOwnerElement() != null) {
+                            attr.getOwnerElement().removeAttributeNode(attr);
+                        }
+
+                        if (attr.getLocalName() != null) {
+                            element.setAttributeNodeNS(attr);
+                        }
+                        else {
+                            element.setAttributeNode(attr);
+                        }
+                    }
+
+                    break;
+                }
+
+                case DATA: {
+                    ((CharacterData) target).setData(value);
+                    break;
+                }
+
+                case RENAMED: {
+                    if (target == related) {
+                        target.getOwnerDocument().renameNode(target, (String) previous, value);
+                        LiveQueries.renamed((Element) target);
+                    }
+
+                    // The replacement's removal and the original element's
+                    // re-insertion are undone by subsequent entries
+                    else {
+                        Element element = (Element) target;
+                        Element replacement = (Element) related;
+                        NamedNodeMap attributes = replacement.getAttributes();
+
+                        while (attributes.getLength() > 0) {
+                            Attr attr = (Attr) attributes.item(0);
+                            replacement.removeAttributeNode(attr);
+
+                            if (attr.getLocalName() != null) {
+                                element.setAttributeNodeNS(attr);
+                            }
+                            else {
+                                element.setAttributeNode(attr);
+                            }
+                        }
+
+                        while (replacement.getFirstChild() != null) {
+                            element.appendChild(replacement.getFirstChild());
+                        }
+                    }
+
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+
+/**
+ * Incrementally maintained results of simple selectors on a document.
+ * <p>
+ * For every element whose descendants have been searched, the matching
+ * descendants are kept per query. As these depend only on the element's own
+ * subtree, a DOM mutation invalidates only the results of the mutated node
+ * and its ancestors. Re-evaluating a query then reuses the results of all
+ * untouched subtrees and rescans only the changed ones.
+ * <p>
+ * Mutations are observed through DOM Level 2 mutation events, such that
+ * mutations performed by jOOX and by any other code are taken into account.
+ * Documents that do not support mutation events cannot be queried live.
+ * Detached nodes do not propagate mutation events to their document, so their
+ * results are not cached, and the cached results inside a subtree are dropped
+ * when it is inserted into the document.
+ * <p>
+ * Results are cached for every element of a searched subtree. Their total size
+ * is the number of matching elements times their depth, i.e. up to
+ * <code>O(nodes &times; depth)</code> for <code>find("*")</code>.
+ *
+ * @author Lukas Eder
+ */
+final class LiveQueries implements EventListener {
+
+    private static final String                            KEY   = LiveQueries.class.getName();
+    private static final Element[]                         EMPTY = {};
+
+    private final Map<Query, Map<Element, Element[]>>      results;
+    private int                                            sweep;
+
+    private LiveQueries() {
+        this.results = new HashMap<Query, Map<Element, Element[]>>();
+        this.sweep = 1024;
+    }
+
+    /**
+     * Enable live queries on a document, if it supports mutation events
+     */
+    static final void enable(Document document) {
+        if (document instanceof EventTarget && get(document) == null) {
+            LiveQueries queries = new LiveQueries();
+            document.setUserData(KEY, queries, null);
+            ((EventTarget) document).addEventListener("DOMSubtreeModified", queries, false);
+            ((EventTarget) document).addEventListener("DOMNodeInserted", queries, false);
+        }
+    }
+
+    /**
+     * Get the live queries of a document, or <code>null</code> if live queries
+     * were not enabled on it
+     */
+    static final LiveQueries get(Document document) {
+        return document == null ? null : (LiveQueries) document.getUserData(KEY);
+    }
+
+    /**
+     * Find all descendants of an element matching a tag name, or
+     * <code>"*"</code>
+     * <p>
+     * Note that <code>"*"</code> caches the whole subtree of every descendant.
+     */
+    final Element[] find(Element element, String tagName) {
+        return find(element, new Query(false, null, tagName));
+    }
+
+    /**
+     * Find all descendants of an element matching a namespace URI and local
+     * name, either of which may be <code>"*"</code>
+     */
+    final Element[] find(Element element, String namespaceURI, String localName) {
+        return find(element, new Query(true, namespaceURI, localName));
+    }
+
+    /**
+     * Get the cached descendants of an element matching a tag name, or
+     * <code>null</code> if they are not cached
+     */
+    final Element[] cached(Element element, String tagName) {
+        return cached(element, new Query(false, null, tagName));
+    }
+
+    /**
+     * Get the cached descendants of an element matching a namespace URI and
+     * local name, or <code>null</code> if they are not cached
+     */
+    final Element[] cached(Element element, String namespaceURI, String localName) {
+        return cached(element, new Query(true, namespaceURI, localName));
+    }
+
+    private final Element[] cached(Element element, Query query) {
+        Map<Element, Element[]> map = results.get(query);
+        return map == null || !isAttached(element) ? null : map.get(element);
+    }
+
+    private final Element[] find(Element element, Query query) {
+
+        // Mutations of detached nodes cannot be observed
+        if (!isAttached(element)) {
+            return find(element, query, new IdentityHashMap<Element, Element[]>());
+        }
+
+        Map<Element, Element[]> map = results.get(query);
+
+        if (map == null) {
+            map = new IdentityHashMap<Element, Element[]>();
+            results.put(query, map);
+        }
+
+        return find(element, query, map);
+    }
+
+    private final Element[] find(Element element, Query query, Map<Element, Element[]> map) {
+        Element[] result = map.get(element);
+
+        if (result != null) {
+            return result;
+        }
+
+        // Documents may be deeper than the call stack, so the subtree is walked
+        // iteratively. Every level keeps its element, the matching descendants
+        // found so far and the next child to be visited
+        List<Element> elements = new ArrayList<Element>();
+        List<List<Element>> lists = new ArrayList<List<Element>>();
+        List<Node> next = new ArrayList<Node>();
+
+        elements.add(element);
+        lists.add(new ArrayList<Element>());
+        next.add(element.getFirstChild());
+
+        for (;;) {
+            int top = elements.size() - 1;
+            Node child = next.get(top);
+
+            while (child != null && child.getNodeType() != Node.ELEMENT_NODE) {
+                child = child.getNextSibling();
+            }
+
+            // All children of this level have been visited
+            if (child == null) {
+                List<Element> list = lists.remove(top);
+                Element e = elements.remove(top);
+                next.remove(top);
+
+                result = list.isEmpty() ? EMPTY : list.toArray(new Element[list.size()]);
+                map.put(e, result);
+
+                if (top == 0) {
+                    break;
+                }
+
+                lists.get(top - 1).addAll(Arrays.asList(result));
+                continue;
+            }
+
+            Element e = (Element) child;
+            next.set(top, child.getNextSibling());
+
+            if (query.matches(e)) {
+                lists.get(top).add(e);
+            }
+
+            // Leaves have no descendants to be cached
+            if (e.getFirstChild() != null) {
+                Element[] cached = map.get(e);
+
+                if (cached != null) {
+                    lists.get(top).addAll(Arrays.asList(cached));
+                }
+                else {
+                    elements.add(e);
+                    lists.add(new ArrayList<Element>());
+                    next.add(e.getFirstChild());
+                }
+            }
+        }
+
+        if (map.size() > sweep) {
+            sweep(map);
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the results of elements that have been removed from the document,
+     * whenever the number of cached results has doubled
+     */
+    private final void sweep(Map<Element, Element[]> map) {
+        Iterator<Element> it = map.keySet().iterator();
+
+        while (it.hasNext()) {
+            if (!isAttached(it.next())) {
+                it.remove();
+            }
+        }
+
+        sweep = Math.max(sweep, map.size() * 2);
+    }
+
+    private static final boolean isAttached(Node node) {
+        Node n = node;
+
+        while (n.getParentNode() != null) {
+            n = n.getParentNode();
+        }
+
+        return n.getNodeType() == Node.DOCUMENT_NODE;
+    }
+
+    // -------------------------------------------------------------------------
+    // EventListener API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final void handleEvent(Event event) {
+        if ("DOMNodeInserted".equals(event.getType())) {
+            forget((Node) event.getTarget());
+        }
+        else {
+            invalidate((Node) event.getTarget());
+        }
+    }
+
+    /**
+     * Record the in-place renaming of an element, which is not reported by
+     * mutation events
+     */
+    static final void renamed(Element element) {
+        LiveQueries queries = get(element.getOwnerDocument());
+
+        if (queries != null) {
+            queries.invalidate(element);
+        }
+    }
+
+    /**
+     * Invalidate the results of a mutated node and all of its ancestors
+     */
+    private final void invalidate(Node target) {
+        Node n = target;
+
+        if (n.getNodeType() == Node.ATTRIBUTE_NODE) {
+            n = ((Attr) n).getOwnerElement();
+        }
+
+        for (Node node = n; node != null; node = node.getParentNode()) {
+            for (Map<Element, Element[]> map : results.values()) {
+                map.remove(node);
+            }
+        }
+    }
+
+    /**
+     * Drop the results of all elements in an inserted subtree, which may have
+     * been modified while it was detached
+     */
+    private final void forget(Node inserted) {
+        if (inserted.getNodeType() != Node.ELEMENT_NODE) {
+            return;
+        }
+
+        for (Map<Element, Element[]> map : results.values()) {
+            if (map.isEmpty()) {
+                continue;
+            }
+
+            map.remove(inserted);
+
+            NodeList descendants = ((Element) inserted).getElementsByTagName("*");
+            for (int i = 0;; i++) {
+                Node descendant = descendants.item(i);
+
+                if (descendant == null) {
+                    break;
+                }
+
+                map.remove(descendant);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Queries
+    // -------------------------------------------------------------------------
+
+    /**
+     * A simple selector, i.e. a tag name or a namespace URI and local name
+     */
+    private static final class Query {
+
+        private final boolean namespaced;
+        private final String  namespaceURI;
+        private final String  name;
+
+        Query(boolean namespaced, String namespaceURI, String name) {
+            this.namespaced = namespaced;
+            this.namespaceURI = "".equals(namespaceURI) ? null : namespaceURI;
+            this.name = name;
+        }
+
+        final boolean matches(Element element) {
+            if (!namespaced) {
+                return "*".equals(name) || name.equals(element.getTagName());
+            }
+            else if (!"*".equals(name) && !name.equals(element.getLocalName())) {
+                return false;
+            }
+            else if ("*".equals(namespaceURI)) {
+                return true;
+            }
+            else if (namespaceURI == null) {
+                return element.getNamespaceURI() == null;
+            }
+            else {
+                return namespaceURI.equals(element.getNamespaceURI());
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + (namespaceURI == null ? 0 : namespaceURI.hashCode()) + (namespaced ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Query) {
+                Query other = (Query) obj;
+
+                return namespaced == other.namespaced
+                    && name.equals(other.name)
+                    && (namespaceURI == null ? other.namespaceURI == null : namespaceURI.equals(other.namespaceURI));
+            }
+
+            return false;
+        }
+    }
+}
@@ -42,10 +42,14 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 
 import org.w3c.dom.Document;
@@ -151,7 +155,9 @@ public interface Match extends Iterable<Element> {
      * <ul>
      * <li>{@link #child()}</li>
      * <li>{@link #children()}</li>
+     * <li>{@link #closest(Filter)}</li>
      * <li>{@link #find()}</li>
+     * <li>{@link #findFirst()}</li>
      * <li>{@link #next()}</li>
      * <li>{@link #nextAll()}</li>
      * <li>{@link #nextUntil(Filter)}</li>
@@ -189,6 +195,8 @@ public interface Match extends Iterable<Element> {
     /**
      * Find the first matching child of each element in the current set of
      * matched elements
+     * <p>
+     * Children following the first matching child are not visited.
      */
     Match child(Filter filter);
 
@@ -310,6 +318,66 @@ public interface Match extends Iterable<Element> {
      */
     Match find(Filter filter);
 
+    /**
+     * Find all descendants of each element in the current set of matched
+     * elements for several selectors at once.
+     * <p>
+     * This is the same as calling {@link #find(String)} for every selector, but
+     * the descendants are visited only once. The resulting map contains one
+     * match per selector, in the order of the given selectors. Each match contains
+     * an element at most once. Duplicate selectors are rejected with an
+     * {@link IllegalArgumentException}.
+     *
+     * @see JOOX#selectors(String...)
+     */
+    Map<String, Match> findAll(String... selectors);
+
+    /**
+     * Find all descendants of each element in the current set of matched
+     * elements for a compiled set of selectors.
+     * <p>
+     * This is the same as calling {@link #find(String)} for every selector, but
+     * the descendants are visited only once. The resulting map contains one
+     * match per selector, in the order of the selector set. Each match contains
+     * an element at most once. Duplicate selectors are rejected with an
+     * {@link IllegalArgumentException}.
+     *
+     * @see JOOX#selectors(String...)
+     */
+    Map<String, Match> findAll(SelectorSet selectors);
+
+    /**
+     * Find the first descendant of each element in the current set of matched
+     * elements.
+     * <p>
+     * This is the same as calling <code>child()</code>.
+     */
+    Match findFirst();
+
+    /**
+     * Find the first matching descendant of each element in the current set of
+     * matched elements.
+     * <p>
+     * Descendants are visited in document order, and the search stops at the
+     * first match. This makes checking whether an element contains a given
+     * descendants. For every element, the result is the same as the first
+     * element of {@link #find(String)}.
+     *
+     * @see JOOX#selector(String)
+     */
+    Match findFirst(String selector);
+
+    /**
+     * Find the first matching descendant of each element in the current set of
+     * matched elements.
+     * <p>
+     * Descendants are visited in document order, and the search stops at the
+     * first match. The callback {@link Context} is populated like in
+     * {@link #find(Filter)}. Use a {@link FastFilter} to avoid counting all
+     * descendants for {@link Context#elementSize()}.
+     */
+    Match findFirst(Filter filter);
+
     /**
      * Match all elements given a certain XPath expression applied to each
      * element in the current set of matched elements.
@@ -646,6 +714,33 @@ public interface Match extends Iterable<Element> {
      */
     Match parent(Filter filter);
 
+    /**
+     * Get the first element matching a selector for every element in a set of
+     * matched elements, testing the element itself and then its ancestors
+     *
+     * @see JOOX#selector(String)
+     */
+    Match closest(String selector);
+
+    /**
+     * Get the first element matching a filter for every element in a set of
+     * matched elements, testing the element itself and then its ancestors
+     * <p>
+     * The callback {@link Context} is populated like this:
+     * <ul>
+     * <li> {@link Context#match()} - the matched element whose ancestors are
+     * searched</li>
+     * <li> {@link Context#matchIndex()} - the index of the matched element whose
+     * ancestors are searched</li>
+     * <li> {@link Context#element()} - the element or ancestor that is being
+     * filtered</li>
+     * <li> {@link Context#elementIndex()} - the relative index of the element
+     * or ancestor that is being filtered, <code>0</code> being the element
+     * itself</li>
+     * </ul>
+     */
+    Match closest(Filter filter);
+
     /**
      * Get all ancestor elements of every element in a set of matched elements
      */
@@ -1291,6 +1386,42 @@ public interface Match extends Iterable<Element> {
      */
     <T> List<T> attrs(String name, Class<T> type);
 
+    /**
+     * Get an attribute from all elements in the set of matched elements,
+     * converted to <code>int</code>.
+     * <p>
+     * This is the same as calling <code>attrs(name, int.class)</code>, except
+     * that values are parsed directly into an array without any intermediary
+     * lists or boxing.
+     *
+     * @see JOOX#convert(String, Class)
+     */
+    int[] ints(String name);
+
+    /**
+     * Get an attribute from all elements in the set of matched elements,
+     * converted to <code>long</code>.
+     * <p>
+     * This is the same as calling <code>attrs(name, long.class)</code>, except
+     * that values are parsed directly into an array without any intermediary
+     * lists or boxing.
+     *
+     * @see JOOX#convert(String, Class)
+     */
+    long[] longs(String name);
+
+    /**
+     * Get an attribute from all elements in the set of matched elements,
+     * converted to <code>double</code>.
+     * <p>
+     * This is the same as calling <code>attrs(name, double.class)</code>,
+     * except that values are parsed directly into an array without any
+     * intermediary lists or boxing.
+     *
+     * @see JOOX#convert(String, Class)
+     */
+    double[] doubles(String name);
+
     /**
      * Set an attribute on all elements in the set of matched elements. If
      * <code>value</code> is null, then the attribute is removed. If the
@@ -1398,6 +1529,42 @@ public interface Match extends Iterable<Element> {
      */
     List<String> texts(int... indexes);
 
+    /**
+     * Get all text content of the elements in the set of matched elements,
+     * converted to <code>int</code>.
+     * <p>
+     * This is the same as calling <code>texts(int.class)</code>, except that
+     * values are parsed directly into an array without any intermediary lists
+     * or boxing.
+     *
+     * @see JOOX#convert(String, Class)
+     */
+    int[] ints();
+
+    /**
+     * Get all text content of the elements in the set of matched elements,
+     * converted to <code>long</code>.
+     * <p>
+     * This is the same as calling <code>texts(long.class)</code>, except that
+     * values are parsed directly into an array without any intermediary lists
+     * or boxing.
+     *
+     * @see JOOX#convert(String, Class)
+     */
+    long[] longs();
+
+    /**
+     * Get all text content of the elements in the set of matched elements,
+     * converted to <code>double</code>.
+     * <p>
+     * This is the same as calling <code>texts(double.class)</code>, except that
+     * values are parsed directly into an array without any intermediary lists
+     * or boxing.
+     *
+     * @see JOOX#convert(String, Class)
+     */
+    double[] doubles();
+
     /**
      * Get the text content of the first element in the set of matched elements,
      * or <code>null</code> if there are no matched elements.
@@ -1450,6 +1617,63 @@ public interface Match extends Iterable<Element> {
      */
     Match copy();
 
+    /**
+     * Execute a batch of mutations on the document of this {@link Match}, which
+     * is rolled back as a whole if the batch fails.
+     * <p>
+     * All mutations of the document performed during the batch, by jOOX or
+     * by any other code, are recorded in an undo journal. If the batch throws
+     * an exception, the journal is reverted in reverse order, restoring the
+     * original nodes, attributes and texts, before the exception is
+     * propagated. Batches can be nested. Mutations of nodes that are not
+     * attached to the document are not recorded.
+     *
+     * @return This same {@link Match}
+     * @throws UnsupportedOperationException If the document does not support
+     *             DOM Level 2 mutation events, e.g. if it is compact
+     */
+    Match batch(Batch batch);
+
+    /**
+     * Enable live, incremental queries on the document of this {@link Match}
+     * <p>
+     * Once enabled, simple selectors passed to {@link #find(String)} on any
+     * {@link Match} of the document, such as <code>E</code>, <code>*</code>
+     * or <code>ns|E</code>, remember their matching descendants per subtree.
+     * Mutations of the document, e.g. through {@link #attr(String, String)},
+     * {@link #append(String)} or {@link #remove()}, invalidate only the
+     * results of the mutated subtree and its ancestors, such that repeating a
+     * query rescans only changed subtrees, instead of the whole document.
+     * <p>
+     * Mutations are observed through DOM Level 2 mutation events, which slows
+     * down mutations somewhat. This has no effect on documents that do not
+     * support mutation events, such as compact documents, which cannot be
+     * mutated anyway.
+     *
+     * @return This same {@link Match}
+     */
+    Match live();
+
+    /**
+     * Get a copy of the {@link Match} wrapper with an additional namespace
+     * prefix binding.
+     * <p>
+     * Bound prefixes are inherited by all matches derived from the copy. They
+     * can be used in namespace-aware selectors, such as
+     * <code>find("soap|Body")</code> or <code>children("*|item")</code>, and
+     * in XPath expressions, such as <code>xpath("//soap:Body")</code>. This
+     * requires a namespace-aware document, see {@link JOOX#builder(boolean)}.
+     */
+    Match namespace(String namespacePrefix, String namespaceURI);
+
+    /**
+     * Get a copy of the {@link Match} wrapper with additional namespace prefix
+     * bindings.
+     *
+     * @see #namespace(String, String)
+     */
+    Match namespaces(Map<String, String> map);
+
     /**
      * Get a list of XPath expressions describing the elements in the current
      * set of matched elements
@@ -1571,6 +1795,18 @@ public interface Match extends Iterable<Element> {
      */
     Match write(File file) throws IOException;
 
+    /**
+     * Write a snapshot of the matched elements' document into a stream
+     * <p>
+     * The snapshot contains the whole document, not just the set of matched
+     * elements. It is written in the flat binary layout of compact documents,
+     * which can be loaded again using {@link JOOX#snapshot(InputStream)} or
+     * {@link JOOX#map(File)}, much faster than parsing the equivalent XML.
+     *
+     * @see JOOX#compact(Document)
+     */
+    Match snapshot(OutputStream stream) throws IOException;
+
     /**
      * Unmarshal the current set of matched elements into a JAXB-annotated type.
      */
@@ -1582,6 +1818,27 @@ public interface Match extends Iterable<Element> {
      */
     <T> List<T> unmarshal(Class<T> type, int... indexes);
 
+    /**
+     * Unmarshal the current set of matched elements into a JAXB-annotated type,
+     * distributing the work among the threads of an {@link Executor}.
+     * <p>
+     * The resulting list has the same order as the set of matched elements.
+     * Every task uses its own {@link javax.xml.bind.Unmarshaller}. As DOM
+     * implementations are not thread-safe, the elements are copied on the
+     * calling thread, such that every task reads its own copies.
+     */
+    <T> List<T> unmarshal(Class<T> type, Executor executor);
+
+    /**
+     * Lazily unmarshal the current set of matched elements into a
+     * JAXB-annotated type.
+     * <p>
+     * Elements are unmarshalled one at a time, when {@link Iterator#next()} is
+     * called. This is useful when the unmarshalled objects are too large to be
+     * held in memory all at once.
+     */
+    <T> Iterator<T> unmarshalIterator(Class<T> type);
+
     /**
      * Unmarshal the first element in the current set of matched elements into a
      * JAXB-annotated type.
@@ -1647,6 +1904,24 @@ public interface Match extends Iterable<Element> {
 
     /**
      * Transform all elements in the set of matched elements.
+     * <p>
+     * A new {@link Transformer} is obtained from the compiled
+     * <code>transformer</code> for every call. As {@link Templates} are
+     * thread-safe, the same instance can be used to transform many documents
+     * from many threads.
+     *
+     * @see #transform(Transformer)
+     */
+    Match transform(Templates transformer);
+
+    /**
+     * Transform all elements in the set of matched elements.
+     * <p>
+     * Compiled stylesheets are cached. Stylesheets read from the file system
+     * are recompiled when they are modified. Stylesheets read from streams or
+     * readers are cached by content. Stylesheets that include or import other
+     * stylesheets, as well as sources other than
+     * {@link javax.xml.transform.stream.StreamSource}, are compiled every time.
      *
      * @see #transform(Transformer)
      */
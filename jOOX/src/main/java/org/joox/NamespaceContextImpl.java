@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+/**
+ * An immutable {@link NamespaceContext} holding the namespace prefixes bound
+ * through {@link Match#namespace(String, String)}.
+ * <p>
+ * The same instance is shared by all {@link Match} objects derived from the
+ * one that bound the prefixes, and reused for all of their XPath expressions
+ * and namespace-aware selectors. Prefixes that are not bound explicitly are
+ * looked up in xalan's extension namespaces, if Xalan is on the classpath.
+ *
+ * @author Lukas Eder
+ */
+final class NamespaceContextImpl implements NamespaceContext {
+
+    private final Map<String, String> namespaces;
+
+    NamespaceContextImpl(Map<String, String> namespaces) {
+        this.namespaces = Collections.unmodifiableMap(new LinkedHashMap<String, String>(namespaces));
+    }
+
+    /**
+     * Create a new context containing this context's prefixes and some
+     * additional ones, which take precedence
+     */
+    final NamespaceContextImpl add(Map<String, String> additional) {
+        Map<String, String> map = new LinkedHashMap<String, String>(namespaces);
+        map.putAll(additional);
+        return new NamespaceContextImpl(map);
+    }
+
+    /**
+     * Resolve a prefix used in a selector, failing if it is not bound
+     */
+    final String resolve(String prefix) {
+        String namespaceURI = getNamespaceURI(prefix);
+
+        if (XMLConstants.NULL_NS_URI.equals(namespaceURI)) {
+            throw new IllegalArgumentException("Namespace prefix " + prefix + " is not bound. Use Match.namespace(String, String) to bind it");
+        }
+
+        return namespaceURI;
+    }
+
+    // -------------------------------------------------------------------------
+    // NamespaceContext API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final String getNamespaceURI(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix must not be null");
+        }
+
+        String namespaceURI = namespaces.get(prefix);
+        if (namespaceURI != null) {
+            return namespaceURI;
+        }
+        else if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        else if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+        }
+
+        NamespaceContext xalan = Util.xalanNamespaceContext();
+        if (xalan != null) {
+            namespaceURI = xalan.getNamespaceURI(prefix);
+
+            if (namespaceURI != null) {
+                return namespaceURI;
+            }
+        }
+
+        return XMLConstants.NULL_NS_URI;
+    }
+
+    @Override
+    public final String getPrefix(String namespaceURI) {
+        Iterator<?> prefixes = getPrefixes(namespaceURI);
+        return prefixes.hasNext() ? (String) prefixes.next() : null;
+    }
+
+    @Override
+    public final Iterator<?> getPrefixes(String namespaceURI) {
+        if (namespaceURI == null) {
+            throw new IllegalArgumentException("Namespace URI must not be null");
+        }
+
+        List<String> result = new ArrayList<String>();
+
+        for (Entry<String, String> entry : namespaces.entrySet()) {
+            if (namespaceURI.equals(entry.getValue())) {
+                result.add(entry.getKey());
+            }
+        }
+
+        if (XMLConstants.XML_NS_URI.equals(namespaceURI)) {
+            result.add(XMLConstants.XML_NS_PREFIX);
+        }
+        else if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespaceURI)) {
+            result.add(XMLConstants.XMLNS_ATTRIBUTE);
+        }
+
+        NamespaceContext xalan = Util.xalanNamespaceContext();
+        if (xalan != null) {
+            Iterator<?> prefixes = xalan.getPrefixes(namespaceURI);
+
+            while (prefixes != null && prefixes.hasNext()) {
+                result.add((String) prefixes.next());
+            }
+        }
+
+        return Collections.unmodifiableList(result).iterator();
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.util.regex.Pattern;
+
+/**
+ * A cache for compiled regular expressions.
+ * <p>
+ * {@link String#matches(String)} compiles its regular expression on every
+ * call, whereas a {@link Pattern} is thread-safe and can be shared by all
+ * filters using the same regular expression.
+ *
+ * @author Lukas Eder
+ */
+final class PatternCache {
+
+    /**
+     * The maximum number of cached patterns
+     */
+    private static final int                           MAX_PATTERNS = 256;
+
+    /**
+     * The cached patterns
+     */
+    private static final BoundedCache<String, Pattern> CACHE        = new BoundedCache<String, Pattern>(MAX_PATTERNS);
+
+    /**
+     * Get a compiled pattern for a regular expression
+     */
+    static final Pattern pattern(String regex) {
+        Pattern pattern = CACHE.get(regex);
+
+        if (pattern == null) {
+            pattern = CACHE.put(regex, Pattern.compile(regex));
+        }
+
+        return pattern;
+    }
+
+    private PatternCache() {}
+}
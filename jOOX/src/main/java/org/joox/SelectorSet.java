@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.joox.selector.CSSMatcher;
+
+/**
+ * A compiled set of CSS selectors, created with
+ * {@link JOOX#selectors(String...)}.
+ * <p>
+ * A selector set is evaluated using {@link Match#findAll(SelectorSet)}, which
+ * classifies every descendant element against all selectors in a single tree
+ * walk, rather than walking the tree once per selector. Selectors are hashed
+ * by the id, class or type selector of their rightmost element, such that each
+ * element is only checked against the few selectors that can possibly match
+ * it. For instance:
+ *
+ * <pre>
+ * SelectorSet routes = selectors("order > item", "#total", ".error");
+ *
+ * for (Document document : documents) {
+ *     Map&lt;String, Match&gt; result = $(document).findAll(routes);
+ * }
+ * </pre>
+ * <p>
+ * Selectors that cannot be evaluated in a tree walk, such as namespaced type
+ * selectors, are evaluated using {@link Match#find(String)} instead. Each
+ * selector may occur only once in a set, as the results are keyed by selector.
+ * Selector sets are immutable and can be shared among threads.
+ *
+ * @author Lukas Eder
+ */
+public final class SelectorSet {
+
+    final String[]   selectors;
+    final CSSMatcher matcher;
+
+    SelectorSet(String... selectors) {
+        Set<String> unique = new HashSet<String>();
+
+        for (String selector : selectors) {
+            if (!unique.add(selector)) {
+                throw new IllegalArgumentException("Duplicate selector: " + selector);
+            }
+        }
+
+        this.selectors = selectors.clone();
+        this.matcher = new CSSMatcher(selectors);
+    }
+
+    /**
+     * The number of selectors in this set
+     */
+    public int size() {
+        return selectors.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(selectors);
+    }
+}
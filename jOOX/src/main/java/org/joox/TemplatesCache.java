@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * A cache for compiled XSLT stylesheets.
+ * <p>
+ * Compiling a stylesheet is expensive, whereas the resulting {@link Templates}
+ * object is thread-safe and can cheaply create new
+ * {@link javax.xml.transform.Transformer} instances. Stylesheets are keyed by
+ * <ul>
+ * <li>their file path, modification time and length, if they are read from
+ * the file system</li>
+ * <li>their content and system ID, otherwise</li>
+ * </ul>
+ * Stylesheets that include or import other stylesheets are not cached, as
+ * modifications of the included stylesheets cannot be detected.
+ *
+ * @author Lukas Eder
+ */
+final class TemplatesCache {
+
+    /**
+     * The maximum number of cached stylesheets
+     */
+    private static final int                             MAX_TEMPLATES = 64;
+
+    /**
+     * The cached stylesheets
+     */
+    private static final BoundedCache<Object, Templates> CACHE         = new BoundedCache<Object, Templates>(MAX_TEMPLATES);
+
+    /**
+     * Get a compiled stylesheet from a file
+     */
+    static final Templates templates(File file) {
+        Object key = Arrays.<Object>asList(file.getAbsolutePath(), file.lastModified(), file.length());
+        Templates templates = CACHE.get(key);
+
+        if (templates == null) {
+            templates = cache(key, new StreamSource(file));
+        }
+
+        return templates;
+    }
+
+    /**
+     * Get a compiled stylesheet from a URL
+     */
+    static final Templates templates(URL url) {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return templates(new File(url.toURI()));
+            }
+            catch (Exception ignore) {}
+        }
+
+        try {
+            InputStream stream = url.openStream();
+
+            try {
+                return templates(read(stream), url.toExternalForm());
+            }
+            finally {
+                stream.close();
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get a compiled stylesheet from a stream. The stream is read entirely
+     */
+    static final Templates templates(InputStream stream) {
+        return templates(stream, null);
+    }
+
+    /**
+     * Get a compiled stylesheet from a stream, resolving relative URIs against
+     * a system ID. The stream is read entirely
+     */
+    static final Templates templates(InputStream stream, String systemId) {
+        try {
+            return templates(read(stream), systemId);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get a compiled stylesheet from a reader. The reader is read entirely
+     */
+    static final Templates templates(Reader reader) {
+        return templates(reader, null);
+    }
+
+    /**
+     * Get a compiled stylesheet from a reader, resolving relative URIs against
+     * a system ID. The reader is read entirely
+     */
+    static final Templates templates(Reader reader, String systemId) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+
+            for (int read; (read = reader.read(buffer)) != -1;) {
+                sb.append(buffer, 0, read);
+            }
+
+            String content = sb.toString();
+            Object key = Arrays.<Object>asList(content, systemId);
+            Templates templates = CACHE.get(key);
+
+            if (templates == null) {
+                StreamSource source = new StreamSource(new StringReader(content));
+                source.setSystemId(systemId);
+                templates = cache(key, source);
+            }
+
+            return templates;
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get a compiled stylesheet from a source.
+     * <p>
+     * Only {@link StreamSource} objects can be cached. Other sources are
+     * compiled every time.
+     */
+    static final Templates templates(Source source) {
+        if (source instanceof StreamSource) {
+            StreamSource stream = (StreamSource) source;
+
+            if (stream.getInputStream() != null) {
+                return templates(stream.getInputStream(), stream.getSystemId());
+            }
+            else if (stream.getReader() != null) {
+                return templates(stream.getReader(), stream.getSystemId());
+            }
+            else if (stream.getSystemId() != null) {
+                try {
+                    return templates(new URI(stream.getSystemId()).toURL());
+                }
+                catch (Exception ignore) {}
+            }
+        }
+
+        return compile(source);
+    }
+
+    private static final Templates templates(byte[] content, String systemId) {
+        Object key = Arrays.<Object>asList(ByteBuffer.wrap(content), systemId);
+        Templates templates = CACHE.get(key);
+
+        if (templates == null) {
+            StreamSource source = new StreamSource(new ByteArrayInputStream(content));
+            source.setSystemId(systemId);
+            templates = cache(key, source);
+        }
+
+        return templates;
+    }
+
+    /**
+     * Compile a stylesheet and cache it, unless it includes or imports other
+     * stylesheets
+     */
+    private static final Templates cache(Object key, Source source) {
+        IncludeResolver resolver = new IncludeResolver();
+        Templates templates = compile(source, resolver);
+
+        return resolver.included ? templates : CACHE.put(key, templates);
+    }
+
+    private static final Templates compile(Source source) {
+        return compile(source, null);
+    }
+
+    private static final Templates compile(Source source, URIResolver resolver) {
+        try {
+            TransformerFactory factory = TransformerFactory.newInstance();
+
+            if (resolver != null) {
+                factory.setURIResolver(resolver);
+            }
+
+            return factory.newTemplates(source);
+        }
+        catch (TransformerConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final byte[] read(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        for (int read; (read = stream.read(buffer)) != -1;) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * A {@link URIResolver} recording whether a stylesheet includes or imports
+     * other stylesheets, leaving their resolution to the XSLT processor
+     */
+    private static final class IncludeResolver implements URIResolver {
+
+        boolean included;
+
+        @Override
+        public Source resolve(String href, String base) {
+            included = true;
+            return null;
+        }
+    }
+
+    private TemplatesCache() {}
+}
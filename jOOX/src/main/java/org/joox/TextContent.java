@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.w3c.dom.Node;
+
+/**
+ * A read-only view of the text content of a node.
+ * <p>
+ * Unlike {@link Node#getTextContent()}, this doesn't concatenate the text
+ * nodes of an element's subtree into a new string. Characters are read from
+ * the text nodes directly, which allows for running regular expressions over
+ * large texts without copying them.
+ *
+ * @author Lukas Eder
+ */
+final class TextContent implements CharSequence {
+
+    private final String[] texts;
+    private final int[]    offsets;
+    private final int      length;
+    private int            current;
+
+    private TextContent(String[] texts) {
+        this.texts = texts;
+        this.offsets = new int[texts.length];
+
+        int offset = 0;
+        for (int i = 0; i < texts.length; i++) {
+            offsets[i] = offset;
+            offset += texts[i].length();
+        }
+
+        this.length = offset;
+    }
+
+    /**
+     * Get the text content of a node, as defined by
+     * {@link Node#getTextContent()}
+     */
+    static final CharSequence of(Node node) {
+        List<String> texts = new ArrayList<String>();
+        texts(node, texts);
+
+        switch (texts.size()) {
+            case 0:
+                return "";
+            case 1:
+                return texts.get(0);
+            default:
+                return new TextContent(texts.toArray(new String[texts.size()]));
+        }
+    }
+
+    private static final void texts(Node node, List<String> texts) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE: {
+                    String value = child.getNodeValue();
+
+                    if (value.length() > 0) {
+                        texts.add(value);
+                    }
+
+                    break;
+                }
+
+                case Node.ELEMENT_NODE:
+                case Node.ENTITY_REFERENCE_NODE:
+                    texts(child, texts);
+                    break;
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // CharSequence API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final int length() {
+        return length;
+    }
+
+    @Override
+    public final char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("" + index);
+        }
+
+        // Regular expressions mostly read characters sequentially
+        int i = current;
+        if (index < offsets[i] || index - offsets[i] >= texts[i].length()) {
+            i = Arrays.binarySearch(offsets, index);
+
+            if (i < 0) {
+                i = -i - 2;
+            }
+
+            current = i;
+        }
+
+        return texts[i].charAt(index - offsets[i]);
+    }
+
+    @Override
+    public final CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(start + ", " + end);
+        }
+
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append(charAt(i));
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder sb = new StringBuilder(length);
+
+        for (String text : texts) {
+            sb.append(text);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * A lightweight description of an element tree, created with
+ * {@link JOOX#tree(String, Tree...)} and its overloads.
+ * <p>
+ * Unlike {@link JOOX#$(String, Match...)}, which creates a new
+ * {@link Document} for every element and imports it into its parent's
+ * document, a tree only holds names, attributes and texts. The whole tree is
+ * then either created directly in a single target document, or streamed to a
+ * {@link Writer} or {@link XMLStreamWriter} without creating any DOM nodes at
+ * all. Trees read just like nested <code>$(...)</code> calls:
+ *
+ * <pre>
+ * Match books = tree("books",
+ *                 tree("book",
+ *                   tree("name", "1984"),
+ *                   tree("author", "George Orwell")).attr("id", "1")).build();
+ * </pre>
+ *
+ * @author Lukas Eder
+ */
+public final class Tree {
+
+    private final String       name;
+    private final String       text;
+    private final List<Tree>   children;
+    private List<String>       attributes;
+
+    Tree(String name, String text, Tree... children) {
+        this.name = name;
+        this.text = text;
+        this.children = children.length == 0 ? null : Arrays.asList(children);
+    }
+
+    /**
+     * Set an attribute on this tree's root element
+     *
+     * @return This same tree
+     */
+    public final Tree attr(String attributeName, String value) {
+        if (attributes == null) {
+            attributes = new ArrayList<String>(2);
+        }
+
+        attributes.add(attributeName);
+        attributes.add(value);
+        return this;
+    }
+
+    // -------------------------------------------------------------------------
+    // DOM
+    // -------------------------------------------------------------------------
+
+    /**
+     * Create this tree in a new document
+     */
+    public final Match build() {
+        Document document = JOOX.builder().newDocument();
+        document.appendChild(build(document));
+        return JOOX.$(document);
+    }
+
+    /**
+     * Create this tree directly in a given document, without appending it
+     * anywhere
+     *
+     * @return The tree's root element, owned by the given document
+     */
+    public final Element build(Document document) {
+        Element element = document.createElement(name);
+
+        if (attributes != null) {
+            for (int i = 0; i < attributes.size(); i += 2) {
+                element.setAttribute(attributes.get(i), attributes.get(i + 1));
+            }
+        }
+
+        if (text != null) {
+            element.appendChild(document.createTextNode(text));
+        }
+
+        if (children != null) {
+            for (Tree child : children) {
+                element.appendChild(child.build(document));
+            }
+        }
+
+        return element;
+    }
+
+    // -------------------------------------------------------------------------
+    // Streaming
+    // -------------------------------------------------------------------------
+
+    /**
+     * Stream this tree to a writer, without creating any DOM nodes
+     * <p>
+     * The writer is flushed, but not closed.
+     */
+    public final void write(Writer writer) throws IOException {
+        try {
+            XMLStreamWriter stream = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+            write(stream);
+            stream.flush();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Stream this tree to an {@link XMLStreamWriter}, without creating any DOM
+     * nodes
+     */
+    public final void write(XMLStreamWriter writer) throws XMLStreamException {
+        if (text == null && children == null) {
+            writer.writeEmptyElement(name);
+            writeAttributes(writer);
+        }
+        else {
+            writer.writeStartElement(name);
+            writeAttributes(writer);
+
+            if (text != null) {
+                writer.writeCharacters(text);
+            }
+
+            if (children != null) {
+                for (Tree child : children) {
+                    child.write(writer);
+                }
+            }
+
+            writer.writeEndElement();
+        }
+    }
+
+    private final void writeAttributes(XMLStreamWriter writer) throws XMLStreamException {
+        if (attributes != null) {
+            for (int i = 0; i < attributes.size(); i += 2) {
+                writer.writeAttribute(attributes.get(i), attributes.get(i + 1));
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Object API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+
+        try {
+            write(writer);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return writer.toString();
+    }
+}
@@ -35,25 +35,31 @@
  */
 package org.joox;
 
-import static java.util.Arrays.asList;
 import static org.joox.JOOX.$;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.xml.XMLConstants;
+import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -62,11 +68,13 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
 import javax.xml.xpath.XPathFunctionResolver;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
@@ -95,6 +103,13 @@ class Util {
      */
     private static XPathFunctionResolver xalanFunctionResolver;
 
+    /**
+     * All powers of ten that are exactly representable as <code>double</code>
+     */
+    private static final double[]        POWERS_OF_TEN        = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
     /**
      * A pattern for the dd.mm.yyyy format
      */
@@ -107,6 +122,45 @@ class Util {
     private static final Pattern         PATTERN_YYYY_MM_DD   = Pattern.compile(
         "^(\\d{4})(?:[-\\./](\\d{2})(?:[-\\./](\\d{2})(?:(?:[\\sT]|'T')(\\d{2})(?:[-\\./:](\\d{2})(?:[-\\./:](\\d{2})(?:\\.(\\d+))?)?)?)?)?)?$");
 
+    /**
+     * A cached {@link DatatypeFactory} per thread, as looking up a factory is
+     * expensive and factories are not guaranteed to be thread-safe
+     */
+    private static final ThreadLocal<DatatypeFactory> DATATYPE_FACTORY = new ThreadLocal<DatatypeFactory>();
+
+    /**
+     * A cached {@link XPathFactory} per thread, as looking up a factory is
+     * expensive and factories are not thread-safe
+     */
+    private static final ThreadLocal<XPathFactory>    XPATH_FACTORY    = new ThreadLocal<XPathFactory>() {
+        @Override
+        protected XPathFactory initialValue() {
+            return XPathFactory.newInstance();
+        }
+    };
+
+    /**
+     * A cached {@link DocumentBuilderFactory} per thread, as looking up a
+     * factory is expensive and factories are not thread-safe
+     */
+    private static final ThreadLocal<DocumentBuilderFactory> DOCUMENT_BUILDER_FACTORY = new ThreadLocal<DocumentBuilderFactory>() {
+        @Override
+        protected DocumentBuilderFactory initialValue() {
+            return DocumentBuilderFactory.newInstance();
+        }
+    };
+
+    /**
+     * A cached {@link Calendar} per thread, for date calculations in the
+     * default time zone
+     */
+    private static final ThreadLocal<Calendar>        CALENDAR         = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return new GregorianCalendar();
+        }
+    };
+
     /**
      * Create some content in the context of a given document
      *
@@ -181,6 +235,9 @@ class Util {
      * parent</li>
      * <li>Any element that is not already in the document will be deep-imported
      * </li>
+     * <li>Any element that is not already in the document, but detached from
+     * its own document will be moved into the document, rather than copied,
+     * if the DOM implementation supports it</li>
      * </ul>
      *
      * @param document The document to import elements into
@@ -188,19 +245,51 @@ class Util {
      * @return Elements that are all in the supplied document, but detached.
      */
     static final List<Element> importOrDetach(Document document, Element... elements) {
-        List<Element> detached = new ArrayList<Element>();
+        List<Element> detached = new ArrayList<Element>(elements.length);
 
         for (Element e : elements) {
             if (document != e.getOwnerDocument()) {
-                detached.add((Element) document.importNode(e, true));
+                Node adopted = e.getParentNode() == null ? document.adoptNode(e) : null;
+                detached.add((Element) (adopted != null ? adopted : document.importNode(e, true)));
             }
-            else {
+            else if (e.getParentNode() != null) {
                 detached.add((Element) e.getParentNode().removeChild(e));
             }
+            else {
+                detached.add(e);
+            }
         }
         return detached;
     }
 
+    /**
+     * Deep-copy an element into another document.
+     * <p>
+     * The copy is not attached to the document. Namespace declarations that
+     * are in scope of the element, but declared on its ancestors are copied
+     * onto the copy, such that prefixes used in attribute values remain
+     * resolvable.
+     */
+    static final Element copy(Document document, Element element) {
+        Element copy = (Element) document.importNode(element, true);
+
+        for (Node parent = element.getParentNode(); parent instanceof Element; parent = parent.getParentNode()) {
+            NamedNodeMap attributes = parent.getAttributes();
+            final int length = attributes.getLength();
+
+            for (int i = 0; i < length; i++) {
+                Node attribute = attributes.item(i);
+                String name = attribute.getNodeName();
+
+                if ((name.equals("xmlns") || name.startsWith("xmlns:")) && !copy.hasAttribute(name)) {
+                    copy.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, attribute.getNodeValue());
+                }
+            }
+        }
+
+        return copy;
+    }
+
     /**
      * Transform an {@link Match}[] into an {@link Element}[], removing duplicates.
      */
@@ -322,6 +411,292 @@ class Util {
         return string == null ? "" : string;
     }
 
+    /**
+     * Get the text content of an element.
+     * <p>
+     * This avoids concatenating text for the common case of an element
+     * containing only a single text node.
+     */
+    static final String text(Element element) {
+        Node first = element.getFirstChild();
+
+        if (first != null && first.getNextSibling() == null && first.getNodeType() == Node.TEXT_NODE) {
+            return first.getNodeValue();
+        }
+
+        return element.getTextContent();
+    }
+
+    /**
+     * Check whether a string is a plain integer literal that fits into a
+     * <code>long</code> and can thus be parsed by {@link #parseLong(String)}
+     * without falling back to {@link BigDecimal}.
+     */
+    static final boolean isInteger(String value) {
+        final int length = value.length();
+
+        if (length == 0 || length > 18) {
+            return false;
+        }
+
+        int i = 0;
+        char c = value.charAt(0);
+
+        if (c == '-' || c == '+') {
+            if (length == 1) {
+                return false;
+            }
+
+            i = 1;
+        }
+
+        for (; i < length; i++) {
+            c = value.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parse an <code>int</code> value with the same semantics as
+     * {@link JOOX#convert(String, Class)}, without boxing.
+     */
+    static final int parseInt(String value) {
+        return (int) parseLong(value);
+    }
+
+    /**
+     * Parse a <code>long</code> value with the same semantics as
+     * {@link JOOX#convert(String, Class)}, without boxing.
+     * <p>
+     * Plain integer literals are parsed directly. Anything else (decimals,
+     * exponents, very long numbers) is parsed as a {@link BigDecimal}.
+     * Illegal values result in <code>0</code>.
+     */
+    static final long parseLong(String value) {
+        if (value == null) {
+            return 0L;
+        }
+
+        return parseLong(value, 0, value.length());
+    }
+
+    /**
+     * Parse a <code>long</code> value from a range within a string, without
+     * creating any intermediate strings for plain integer literals.
+     *
+     * @see #parseLong(String)
+     */
+    static final long parseLong(String value, int start, int end) {
+        final int length = end - start;
+        if (length == 0 || length > 18) {
+            return parseLongSlow(value.substring(start, end));
+        }
+
+        int i = start;
+        boolean negative = false;
+        char c = value.charAt(start);
+
+        if (c == '-' || c == '+') {
+            if (length == 1) {
+                return 0L;
+            }
+
+            negative = (c == '-');
+            i++;
+        }
+
+        long result = 0L;
+        for (; i < end; i++) {
+            c = value.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return parseLongSlow(value.substring(start, end));
+            }
+
+            result = result * 10 + (c - '0');
+        }
+
+        return negative ? -result : result;
+    }
+
+    private static final long parseLongSlow(String value) {
+        if (!isNumeric(value)) {
+            return 0L;
+        }
+
+        try {
+            return new BigDecimal(value).longValue();
+        }
+        catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Parse a <code>double</code> value with the same semantics as
+     * {@link JOOX#convert(String, Class)}, without boxing.
+     * <p>
+     * Illegal values result in <code>0.0</code>.
+     */
+    static final double parseDouble(String value) {
+        return parseDouble(value, 0.0);
+    }
+
+    private static final double parseDouble(String value, double illegal) {
+        if (value == null || value.length() == 0) {
+            return illegal;
+        }
+
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            return illegal;
+        }
+    }
+
+    /**
+     * Parse a <code>double</code> value from a range within a string.
+     * <p>
+     * Plain decimal literals with up to 15 significant digits and a small
+     * exponent are exactly representable as <code>mantissa * 10^exponent</code>
+     * and can thus be computed with a single, correctly rounded
+     * multiplication or division. Everything else is delegated to
+     * {@link #parseDouble(String)}.
+     */
+    static final double parseDouble(String value, int start, int end) {
+        return parseDouble(value, start, end, 0.0);
+    }
+
+    /**
+     * Parse a <code>double</code> value from a range within a string, like
+     * {@link #parseDouble(String, int, int)}, or return <code>illegal</code>
+     * if the range does not contain a legal value.
+     */
+    static final double parseDouble(String value, int start, int end, double illegal) {
+        int i = start;
+        boolean negative = false;
+
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = (value.charAt(i) == '-');
+            i++;
+        }
+
+        long mantissa = 0L;
+        int significant = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+                digits++;
+
+                if (mantissa != 0L || c != '0') {
+                    if (++significant > 15) {
+                        return parseDouble(value.substring(start, end), illegal);
+                    }
+
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+
+                if (fraction) {
+                    exponent--;
+                }
+            }
+            else if (c == '.' && !fraction) {
+                fraction = true;
+            }
+            else {
+                break;
+            }
+        }
+
+        if (digits == 0) {
+            return parseDouble(value.substring(start, end), illegal);
+        }
+
+        // An optional, short exponent
+        if (i < end) {
+            char c = value.charAt(i);
+
+            if ((c != 'e' && c != 'E') || ++i == end) {
+                return parseDouble(value.substring(start, end), illegal);
+            }
+
+            boolean negativeExponent = false;
+            c = value.charAt(i);
+
+            if (c == '-' || c == '+') {
+                negativeExponent = (c == '-');
+
+                if (++i == end) {
+                    return parseDouble(value.substring(start, end), illegal);
+                }
+            }
+
+            int e = 0;
+            for (; i < end; i++) {
+                c = value.charAt(i);
+
+                if (c < '0' || c > '9' || e > 1000) {
+                    return parseDouble(value.substring(start, end), illegal);
+                }
+
+                e = e * 10 + (c - '0');
+            }
+
+            exponent += negativeExponent ? -e : e;
+        }
+
+        double result = mantissa;
+        if (mantissa != 0L) {
+            if (exponent < -22 || exponent > 22) {
+                return parseDouble(value.substring(start, end), illegal);
+            }
+            else if (exponent < 0) {
+                result = result / POWERS_OF_TEN[-exponent];
+            }
+            else {
+                result = result * POWERS_OF_TEN[exponent];
+            }
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * Check whether a string consists only of characters that can appear in a
+     * {@link BigDecimal} literal, including non-ASCII digits. This helps
+     * rejecting obviously illegal values without throwing and catching an
+     * exception.
+     */
+    static final boolean isNumeric(String value) {
+        final int length = value.length();
+
+        if (length == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E'
+                && (c < 128 || !Character.isDigit(c))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Split a string into values
      */
@@ -391,14 +766,14 @@ class Util {
                             }
 
                             // Delimiter not followed by whitespace or word stop
-                            else if (i + 1 < value.length() && !asList(',', ';', ' ', '\t', '\n', '\r').contains(value.charAt(i + 1))) {
+                            else if (i + 1 < value.length() && !isWordStop(value.charAt(i + 1)) && !isWhitespace(value.charAt(i + 1))) {
                                 sb.append(c);
                             }
 
                             // Consume word stop following delimiter
-                            else if (i + 1 < value.length() && asList(',', ';').contains(value.charAt(i + 1))) {
+                            else if (i + 1 < value.length() && isWordStop(value.charAt(i + 1))) {
                                 result.add(sb.toString());
-                                sb = new StringBuilder();
+                                sb.setLength(0);
                                 state = SplitState.NEW_WITH_AT_LEAST_ONE_WORD;
                                 i++;
                             }
@@ -407,7 +782,7 @@ class Util {
                             // or it is followed by whitespace
                             else {
                                 result.add(sb.toString());
-                                sb = new StringBuilder();
+                                sb.setLength(0);
                                 state = SplitState.NEW;
                             }
 
@@ -432,7 +807,7 @@ class Util {
                         case ',':
                         case ';': {
                             result.add(sb.toString());
-                            sb = new StringBuilder();
+                            sb.setLength(0);
                             state = SplitState.NEW_WITH_AT_LEAST_ONE_WORD;
                             break nonDelimitedSwitch;
                         }
@@ -443,7 +818,7 @@ class Util {
                         case '\n':
                         case '\r': {
                             result.add(sb.toString());
-                            sb = new StringBuilder();
+                            sb.setLength(0);
                             state = SplitState.NEW;
                             break nonDelimitedSwitch;
                         }
@@ -478,6 +853,177 @@ class Util {
         return result;
     }
 
+    /**
+     * Split a string into <code>int</code> values
+     *
+     * @see #split(String)
+     * @see #parseInt(String)
+     */
+    static final int[] splitInts(String value) {
+        int[] bounds = bounds(value);
+        int[] result;
+
+        if (bounds == null) {
+            List<String> split = split(value);
+            result = new int[split.size()];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = parseInt(split.get(i));
+            }
+        }
+        else {
+            result = new int[bounds[0]];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (int) parseLong(value, bounds[2 * i + 1], bounds[2 * i + 2]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Split a string into <code>long</code> values
+     *
+     * @see #split(String)
+     * @see #parseLong(String)
+     */
+    static final long[] splitLongs(String value) {
+        int[] bounds = bounds(value);
+        long[] result;
+
+        if (bounds == null) {
+            List<String> split = split(value);
+            result = new long[split.size()];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = parseLong(split.get(i));
+            }
+        }
+        else {
+            result = new long[bounds[0]];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = parseLong(value, bounds[2 * i + 1], bounds[2 * i + 2]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Split a string into <code>double</code> values
+     *
+     * @see #split(String)
+     * @see #parseDouble(String)
+     */
+    static final double[] splitDoubles(String value) {
+        int[] bounds = bounds(value);
+        double[] result;
+
+        if (bounds == null) {
+            List<String> split = split(value);
+            result = new double[split.size()];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = parseDouble(split.get(i));
+            }
+        }
+        else {
+            result = new double[bounds[0]];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = parseDouble(value, bounds[2 * i + 1], bounds[2 * i + 2]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the words that {@link #split(String)} would produce without
+     * creating any strings.
+     * <p>
+     * The first element of the resulting array contains the number of words
+     * <code>n</code>. Word <code>i</code> then starts at index
+     * <code>2 * i + 1</code> (inclusive) and ends at index
+     * <code>2 * i + 2</code> (exclusive). If <code>value</code> contains
+     * words delimited by <code>'"'</code>, which need unescaping, this
+     * returns <code>null</code>.
+     */
+    private static final int[] bounds(String value) {
+        final int length = value.length();
+
+        int[] result = new int[17];
+        int count = 0;
+
+        // The start of the current word, or -1 when seeking a new word
+        int start = -1;
+        boolean atLeastOneWord = false;
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (start < 0) {
+                if (isWordStop(c)) {
+                    result = bounds(result, count++, i, i);
+                    atLeastOneWord = true;
+                }
+                else if (c == '"') {
+                    return null;
+                }
+                else if (!isWhitespace(c)) {
+                    start = i;
+                }
+            }
+            else if (isWordStop(c) || isWhitespace(c)) {
+                result = bounds(result, count++, start, i);
+                atLeastOneWord = isWordStop(c);
+                start = -1;
+            }
+        }
+
+        // Cleaning up the last word
+        if (start >= 0) {
+            result = bounds(result, count++, start, length);
+        }
+        else if (atLeastOneWord) {
+            result = bounds(result, count++, length, length);
+        }
+
+        result[0] = count;
+        return result;
+    }
+
+    /**
+     * Add a word to an array of bounds, growing it if necessary
+     */
+    private static final int[] bounds(int[] bounds, int index, int start, int end) {
+        int[] result = bounds;
+
+        if (2 * index + 2 >= result.length) {
+            result = Arrays.copyOf(result, result.length * 2 + 1);
+        }
+
+        result[2 * index + 1] = start;
+        result[2 * index + 2] = end;
+        return result;
+    }
+
+    /**
+     * Whether a character is a hard word stop in {@link #split(String)}
+     */
+    private static final boolean isWordStop(char c) {
+        return c == ',' || c == ';';
+    }
+
+    /**
+     * Whether a character is a soft word stop in {@link #split(String)}
+     */
+    private static final boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
     /**
      * The states in the state machine for splitting strings into lists
      */
@@ -511,8 +1057,28 @@ class Util {
      * the classpath.
      */
     static final void xalanExtensionAware(XPath xpath) {
+        loadXalanExtensions();
+
+        if (xalanNamespaceContext != null && xalanFunctionResolver != null) {
+            xpath.setNamespaceContext(xalanNamespaceContext);
+            xpath.setXPathFunctionResolver(xalanFunctionResolver);
+        }
+    }
+
+    /**
+     * Get the xalan extensions {@link NamespaceContext}, or <code>null</code>
+     * if Xalan is not on the classpath
+     */
+    static final NamespaceContext xalanNamespaceContext() {
+        loadXalanExtensions();
+
+        return xalanFunctionResolver != null ? xalanNamespaceContext : null;
+    }
 
-        // Load xalan extensions thread-safely for all of jOOX
+    /**
+     * Load xalan extensions thread-safely for all of jOOX
+     */
+    private static final void loadXalanExtensions() {
         if (!xalanExtensionLoaded) {
             synchronized (Util.class) {
                 if (!xalanExtensionLoaded) {
@@ -530,11 +1096,20 @@ class Util {
                 }
             }
         }
+    }
 
-        if (xalanNamespaceContext != null && xalanFunctionResolver != null) {
-            xpath.setNamespaceContext(xalanNamespaceContext);
-            xpath.setXPathFunctionResolver(xalanFunctionResolver);
-        }
+    /**
+     * Get a cached {@link DocumentBuilderFactory} for the current thread
+     */
+    static final DocumentBuilderFactory documentBuilderFactory() {
+        return DOCUMENT_BUILDER_FACTORY.get();
+    }
+
+    /**
+     * Get a cached {@link XPathFactory} for the current thread
+     */
+    static final XPathFactory xpathFactory() {
+        return XPATH_FACTORY.get();
     }
 
     /**
@@ -545,23 +1120,54 @@ class Util {
             return null;
         }
 
-        try {
-            DatatypeFactory factory = DatatypeFactory.newInstance();
-            XMLGregorianCalendar calendar = factory.newXMLGregorianCalendar(formatted);
-            return calendar.toGregorianCalendar().getTime();
+        // Try the most common ISO 8601 formats first
+        Date date = parseISODate(formatted);
+        if (date != null) {
+            return date;
+        }
+
+        // XML Schema formats never contain whitespace, so avoid the exception
+        if (formatted.indexOf(' ') < 0) {
+            try {
+                XMLGregorianCalendar calendar = datatypeFactory().newXMLGregorianCalendar(formatted);
+                return calendar.toGregorianCalendar().getTime();
+            }
+            catch (Exception ignore) {}
         }
-        catch (Exception e) {
-            Matcher matcher = PATTERN_DD_MM_YYYY.matcher(formatted);
-
-            // Try matching dd.MM.yyyy date formats first
-            if (matcher.find()) {
-                String yyyy = matcher.group(3);
-                String mm = matcher.group(2);
-                String dd = matcher.group(1);
-                String hh = defaultIfEmpty(matcher.group(4), "0");
-                String min = defaultIfEmpty(matcher.group(5), "0");
-                String ss = defaultIfEmpty(matcher.group(6), "0");
-                String ms = defaultIfEmpty(matcher.group(7), "0");
+
+        Matcher matcher = PATTERN_DD_MM_YYYY.matcher(formatted);
+
+        // Try matching dd.MM.yyyy date formats first
+        if (matcher.find()) {
+            String yyyy = matcher.group(3);
+            String mm = matcher.group(2);
+            String dd = matcher.group(1);
+            String hh = defaultIfEmpty(matcher.group(4), "0");
+            String min = defaultIfEmpty(matcher.group(5), "0");
+            String ss = defaultIfEmpty(matcher.group(6), "0");
+            String ms = defaultIfEmpty(matcher.group(7), "0");
+
+            return getDate(Integer.parseInt(yyyy),
+                           Integer.parseInt(mm),
+                           Integer.parseInt(dd),
+                           Integer.parseInt(hh),
+                           Integer.parseInt(min),
+                           Integer.parseInt(ss),
+                           Integer.parseInt(ms));
+        }
+
+        // Then try matching yyyy-MM-dd date formats
+        else {
+            Matcher matcher2 = PATTERN_YYYY_MM_DD.matcher(formatted);
+
+            if (matcher2.find()) {
+                String yyyy = matcher2.group(1);
+                String mm = defaultIfEmpty(matcher2.group(2), "1");
+                String dd = defaultIfEmpty(matcher2.group(3), "1");
+                String hh = defaultIfEmpty(matcher2.group(4), "0");
+                String min = defaultIfEmpty(matcher2.group(5), "0");
+                String ss = defaultIfEmpty(matcher2.group(6), "0");
+                String ms = defaultIfEmpty(matcher2.group(7), "0");
 
                 return getDate(Integer.parseInt(yyyy),
                                Integer.parseInt(mm),
@@ -572,38 +1178,223 @@ class Util {
                                Integer.parseInt(ms));
             }
 
-            // Then try matching yyyy-MM-dd date formats
+            // Finally, try matching plain timestamps
             else {
-                Matcher matcher2 = PATTERN_YYYY_MM_DD.matcher(formatted);
-
-                if (matcher2.find()) {
-                    String yyyy = matcher2.group(1);
-                    String mm = defaultIfEmpty(matcher2.group(2), "1");
-                    String dd = defaultIfEmpty(matcher2.group(3), "1");
-                    String hh = defaultIfEmpty(matcher2.group(4), "0");
-                    String min = defaultIfEmpty(matcher2.group(5), "0");
-                    String ss = defaultIfEmpty(matcher2.group(6), "0");
-                    String ms = defaultIfEmpty(matcher2.group(7), "0");
-
-                    return getDate(Integer.parseInt(yyyy),
-                                   Integer.parseInt(mm),
-                                   Integer.parseInt(dd),
-                                   Integer.parseInt(hh),
-                                   Integer.parseInt(min),
-                                   Integer.parseInt(ss),
-                                   Integer.parseInt(ms));
+                try {
+                    return new Date(Long.parseLong(formatted));
+                } catch (NumberFormatException ignore) {
+                    return null;
                 }
+            }
+        }
+    }
 
-                // Finally, try matching plain timestamps
-                else {
-                    try {
-                        return new Date(Long.parseLong(formatted));
-                    } catch (NumberFormatException ignore) {
-                        return null;
+    /**
+     * Parse the most common ISO 8601 date and time formats without regular
+     * expressions, exceptions, or {@link DatatypeFactory}. These formats are
+     * <ul>
+     * <li><code>yyyy-MM-dd</code></li>
+     * <li><code>yyyy-MM-ddTHH:mm:ss[.SSS...]</code></li>
+     * <li><code>yyyy-MM-dd HH:mm:ss[.SSS]</code></li>
+     * <li><code>HH:mm:ss[.SSS...]</code></li>
+     * </ul>
+     * The <code>T</code>-separated format and the time format may be followed
+     * by a time zone (<code>Z</code>, <code>+hh:mm</code>, <code>-hh:mm</code>),
+     * just like the date format. The results are the same as those of the
+     * slower parsers in {@link #parseDate(String)}.
+     *
+     * @return The parsed date, or <code>null</code> if the format is not
+     *         supported by this method.
+     */
+    static final Date parseISODate(String s) {
+        final int length = s.length();
+
+        int year = 1970;
+        int month = 1;
+        int day = 1;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millisecond = 0;
+        int i = 0;
+
+        boolean hasDate = length >= 10 && s.charAt(4) == '-' && s.charAt(7) == '-';
+        boolean hasTime;
+        boolean xml = true;
+
+        // The date part
+        if (hasDate) {
+            year = digits(s, 0, 4);
+            month = digits(s, 5, 2);
+            day = digits(s, 8, 2);
+
+            // Years before the Gregorian calendar cutover are left to the
+            // XMLGregorianCalendar for correctness
+            if (year < 1583 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+                return null;
+            }
+
+            i = 10;
+            hasTime = i < length && (s.charAt(i) == 'T' || s.charAt(i) == ' ');
+
+            if (hasTime) {
+                xml = s.charAt(i) == 'T';
+                i++;
+            }
+        }
+        else {
+            hasTime = true;
+        }
+
+        // The time part
+        if (hasTime) {
+            if (i + 8 > length || s.charAt(i + 2) != ':' || s.charAt(i + 5) != ':') {
+                return null;
+            }
+
+            hour = digits(s, i, 2);
+            minute = digits(s, i + 3, 2);
+            second = digits(s, i + 6, 2);
+
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return null;
+            }
+
+            i += 8;
+
+            // Fractional seconds
+            if (i < length && s.charAt(i) == '.') {
+                int start = ++i;
+
+                while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                    if (i - start < 3) {
+                        millisecond = millisecond * 10 + (s.charAt(i) - '0');
                     }
+
+                    i++;
+                }
+
+                int fractionLength = i - start;
+
+                // Non-XML formats interpret fractions as plain milliseconds
+                if (fractionLength == 0 || (!xml && fractionLength != 3)) {
+                    return null;
+                }
+
+                for (int j = fractionLength; j < 3; j++) {
+                    millisecond *= 10;
                 }
             }
         }
+
+        // The time zone part
+        if (i == length) {
+            Calendar calendar = CALENDAR.get();
+            calendar.setTimeZone(TimeZone.getDefault());
+            calendar.clear();
+            calendar.set(year, month - 1, day, hour, minute, second);
+            calendar.set(Calendar.MILLISECOND, millisecond);
+            return calendar.getTime();
+        }
+        else if (!xml) {
+            return null;
+        }
+
+        int offset;
+        char c = s.charAt(i);
+
+        if (c == 'Z' && i + 1 == length) {
+            offset = 0;
+        }
+        else if ((c == '+' || c == '-') && i + 6 == length && s.charAt(i + 3) == ':') {
+            int offsetHours = digits(s, i + 1, 2);
+            int offsetMinutes = digits(s, i + 4, 2);
+
+            if (offsetHours < 0 || offsetHours > 14 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return null;
+            }
+
+            offset = (offsetHours * 60 + offsetMinutes) * 60000;
+            if (c == '-') {
+                offset = -offset;
+            }
+        }
+        else {
+            return null;
+        }
+
+        long millis = days(year, month, day) * 86400000L
+                    + hour * 3600000L
+                    + minute * 60000L
+                    + second * 1000L
+                    + millisecond;
+
+        return new Date(millis - offset);
+    }
+
+    /**
+     * Parse a fixed number of digits, or return <code>-1</code> if any
+     * character is not a digit
+     */
+    private static final int digits(String s, int from, int count) {
+        int result = 0;
+
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            result = result * 10 + (c - '0');
+        }
+
+        return result;
+    }
+
+    /**
+     * The number of days in a given month of the Gregorian calendar
+     */
+    private static final int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * The number of days since <code>1970-01-01</code> of a date in the
+     * Gregorian calendar
+     */
+    private static final long days(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    /**
+     * Get a cached {@link DatatypeFactory} for the current thread
+     */
+    private static final DatatypeFactory datatypeFactory() throws DatatypeConfigurationException {
+        DatatypeFactory factory = DATATYPE_FACTORY.get();
+
+        if (factory == null) {
+            factory = DatatypeFactory.newInstance();
+            DATATYPE_FACTORY.set(factory);
+        }
+
+        return factory;
     }
 
     private static Date getDate(int year, int month, int day, int hour, int minute, int second, int millisecond) {
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import static org.joox.compact.CompactDocument.readOnly;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The attributes of an element of a {@link CompactDocument}
+ *
+ * @author Lukas Eder
+ */
+final class Attributes implements NamedNodeMap {
+
+    private final CompactDocument document;
+    private final int             element;
+
+    Attributes(CompactDocument document, int element) {
+        this.document = document;
+        this.element = element;
+    }
+
+    @Override
+    public Node getNamedItem(String name) {
+        return document.attributeNode(document.attribute(element, name), element);
+    }
+
+    @Override
+    public Node getNamedItemNS(String namespaceURI, String localName) {
+        return document.attributeNode(document.attribute(element, namespaceURI, localName), element);
+    }
+
+    @Override
+    public Node item(int index) {
+        if (index < 0 || index >= getLength()) {
+            return null;
+        }
+
+        return document.attributeNode(document.firstAttribute(element) + index, element);
+    }
+
+    @Override
+    public int getLength() {
+        return document.attributeCount(element);
+    }
+
+    // -------------------------------------------------------------------------
+    // NamedNodeMap API: modification
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Node setNamedItem(Node arg) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node removeNamedItem(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node setNamedItemNS(Node arg) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node removeNamedItemNS(String namespaceURI, String localName) {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import static org.joox.compact.CompactDocument.NONE;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The child nodes of a node in a {@link CompactDocument}.
+ * <p>
+ * Child nodes are not indexed. This list remembers the last accessed child,
+ * such that iterating over the list by index takes linear time.
+ *
+ * @author Lukas Eder
+ */
+final class ChildNodes implements NodeList {
+
+    private final CompactDocument document;
+    private final int             parent;
+    private int                   length    = -1;
+    private int                   lastIndex = -1;
+    private int                   lastRow   = NONE;
+
+    ChildNodes(CompactDocument document, int parent) {
+        this.document = document;
+        this.parent = parent;
+    }
+
+    @Override
+    public Node item(int index) {
+        if (index < 0) {
+            return null;
+        }
+
+        int i;
+        int row;
+
+        // Continue from the last accessed child, if possible
+        if (lastRow != NONE && index >= lastIndex) {
+            i = lastIndex;
+            row = lastRow;
+        }
+        else {
+            i = 0;
+            row = document.firstChild(parent);
+        }
+
+        for (; row != NONE && i < index; i++) {
+            row = document.nextSibling(row);
+        }
+
+        if (row == NONE) {
+            return null;
+        }
+
+        lastIndex = i;
+        lastRow = row;
+        return document.node(row);
+    }
+
+    @Override
+    public int getLength() {
+        if (length < 0) {
+            int result = 0;
+
+            for (int row = document.firstChild(parent); row != NONE; row = document.nextSibling(row)) {
+                result++;
+            }
+
+            length = result;
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * An attribute of an element in a {@link CompactDocument}. Unlike other
+ * nodes, attributes are identified by their index in the attribute table.
+ *
+ * @author Lukas Eder
+ */
+final class CompactAttr extends CompactNode implements Attr {
+
+    private final int owner;
+
+    CompactAttr(CompactDocument document, int index, int owner) {
+        super(document, index);
+
+        this.owner = owner;
+    }
+
+    @Override
+    int row() {
+        return owner;
+    }
+
+    // -------------------------------------------------------------------------
+    // Node API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String getNodeName() {
+        return document.attributeName(index);
+    }
+
+    @Override
+    public String getNodeValue() {
+        return document.attributeValue(index);
+    }
+
+    @Override
+    public short getNodeType() {
+        return ATTRIBUTE_NODE;
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return document.attributeNamespaceURI(index);
+    }
+
+    @Override
+    public String getPrefix() {
+        return document.attributePrefix(index);
+    }
+
+    @Override
+    public String getLocalName() {
+        return document.attributeLocalName(index);
+    }
+
+    @Override
+    public String getTextContent() {
+        return document.attributeValue(index);
+    }
+
+    @Override
+    public Node getParentNode() {
+        return null;
+    }
+
+    @Override
+    public NodeList getChildNodes() {
+        return Elements.EMPTY;
+    }
+
+    @Override
+    public Node getFirstChild() {
+        return null;
+    }
+
+    @Override
+    public Node getLastChild() {
+        return null;
+    }
+
+    @Override
+    public Node getPreviousSibling() {
+        return null;
+    }
+
+    @Override
+    public Node getNextSibling() {
+        return null;
+    }
+
+    @Override
+    public boolean hasChildNodes() {
+        return false;
+    }
+
+    // -------------------------------------------------------------------------
+    // Attr API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String getName() {
+        return document.attributeName(index);
+    }
+
+    @Override
+    public boolean getSpecified() {
+        return true;
+    }
+
+    @Override
+    public String getValue() {
+        return document.attributeValue(index);
+    }
+
+    @Override
+    public void setValue(String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public Element getOwnerElement() {
+        return (Element) document.node(owner);
+    }
+
+    @Override
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    @Override
+    public boolean isId() {
+        return false;
+    }
+}
@@ -0,0 +1,455 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import static org.joox.compact.CompactDocument.ATTRIBUTE_LENGTH;
+import static org.joox.compact.CompactDocument.ATTRIBUTE_NAME;
+import static org.joox.compact.CompactDocument.ATTRIBUTE_SIZE;
+import static org.joox.compact.CompactDocument.ATTRIBUTE_VALUE;
+import static org.joox.compact.CompactDocument.END;
+import static org.joox.compact.CompactDocument.LENGTH;
+import static org.joox.compact.CompactDocument.NAME;
+import static org.joox.compact.CompactDocument.NODE_SIZE;
+import static org.joox.compact.CompactDocument.NONE;
+import static org.joox.compact.CompactDocument.PARENT;
+import static org.joox.compact.CompactDocument.PREVIOUS;
+import static org.joox.compact.CompactDocument.TYPE;
+import static org.joox.compact.CompactDocument.VALUE;
+
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.DefaultHandler2;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * A SAX handler building a {@link CompactDocument}.
+ * <p>
+ * Nodes are appended to the node table in document order. Adjacent character
+ * data is merged into a single text node, as a DOM builder would do. Existing
+ * DOM documents can be copied by replaying them through {@link #copy(Node)}.
+ *
+ * @author Lukas Eder
+ */
+final class CompactBuilder extends DefaultHandler2 {
+
+    private final boolean              namespaceAware;
+    private final String               documentURI;
+
+    // The tables being built
+    private int[]                      nodes         = new int[NODE_SIZE * 64];
+    private int                        nodeCount;
+    private int[]                      attributes    = new int[ATTRIBUTE_SIZE * 64];
+    private int                        attributeCount;
+    private char[]                     text          = new char[1024];
+    private int                        textLength;
+
+    // The name table being built
+    private final Map<String, Integer> symbols       = new HashMap<String, Integer>();
+    private String[]                   names         = new String[16];
+    private String[]                   namespaceURIs = new String[16];
+    private String[]                   localNames    = new String[16];
+    private String[]                   prefixes      = new String[16];
+    private int                        nameCount;
+
+    // The currently open nodes and their last child
+    private int[]                      open          = new int[16];
+    private int[]                      lastChild     = new int[16];
+    private int                        depth;
+
+    private boolean                    cdata;
+    private boolean                    dtd;
+
+    CompactBuilder(boolean namespaceAware, String documentURI) {
+        this.namespaceAware = namespaceAware;
+        this.documentURI = documentURI;
+    }
+
+    /**
+     * Get the document built by this handler
+     */
+    final CompactDocument document() {
+        return new CompactDocument(
+            IntBuffer.wrap(Arrays.copyOf(nodes, nodeCount * NODE_SIZE)),
+            IntBuffer.wrap(Arrays.copyOf(attributes, attributeCount * ATTRIBUTE_SIZE)),
+            CharBuffer.wrap(Arrays.copyOf(text, textLength)),
+            Arrays.copyOf(names, nameCount),
+            Arrays.copyOf(namespaceURIs, nameCount),
+            Arrays.copyOf(localNames, nameCount),
+            Arrays.copyOf(prefixes, nameCount),
+            documentURI);
+    }
+
+    // -------------------------------------------------------------------------
+    // DOM API
+    // -------------------------------------------------------------------------
+
+    /**
+     * Replay a DOM node and its descendants as SAX events
+     */
+    final void copy(Node node) {
+        switch (node.getNodeType()) {
+            case Node.DOCUMENT_NODE: {
+                startDocument();
+                copyChildren(node);
+                endDocument();
+                break;
+            }
+
+            case Node.ELEMENT_NODE: {
+                NamedNodeMap map = node.getAttributes();
+                AttributesImpl atts = new AttributesImpl();
+
+                for (int i = 0; i < map.getLength(); i++) {
+                    Node attr = map.item(i);
+                    atts.addAttribute(
+                        nullToEmpty(attr.getNamespaceURI()),
+                        nullToEmpty(attr.getLocalName()),
+                        attr.getNodeName(),
+                        "CDATA",
+                        attr.getNodeValue());
+                }
+
+                String uri = nullToEmpty(node.getNamespaceURI());
+                String localName = nullToEmpty(node.getLocalName());
+                startElement(uri, localName, node.getNodeName(), atts);
+                copyChildren(node);
+                endElement(uri, localName, node.getNodeName());
+                break;
+            }
+
+            case Node.TEXT_NODE: {
+                char[] ch = node.getNodeValue().toCharArray();
+                characters(ch, 0, ch.length);
+                break;
+            }
+
+            case Node.CDATA_SECTION_NODE: {
+                char[] ch = node.getNodeValue().toCharArray();
+                startCDATA();
+                characters(ch, 0, ch.length);
+                endCDATA();
+                break;
+            }
+
+            case Node.COMMENT_NODE: {
+                char[] ch = node.getNodeValue().toCharArray();
+                comment(ch, 0, ch.length);
+                break;
+            }
+
+            case Node.PROCESSING_INSTRUCTION_NODE: {
+                processingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+            }
+
+            // Entity references are expanded, document types are skipped,
+            // just like when parsing
+            case Node.ENTITY_REFERENCE_NODE:
+            case Node.DOCUMENT_FRAGMENT_NODE: {
+                copyChildren(node);
+                break;
+            }
+        }
+    }
+
+    private final void copyChildren(Node node) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            copy(child);
+        }
+    }
+
+    private static final String nullToEmpty(String string) {
+        return string == null ? "" : string;
+    }
+
+    /**
+     * Whether a DOM document was built namespace-aware
+     */
+    static final boolean isNamespaceAware(Document document) {
+        Node element = document.getDocumentElement();
+        return element != null && element.getLocalName() != null;
+    }
+
+    // -------------------------------------------------------------------------
+    // ContentHandler API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void startDocument() {
+        nodeCount = 0;
+        depth = 0;
+
+        add(Node.DOCUMENT_NODE, NONE);
+        push(0);
+    }
+
+    @Override
+    public void endDocument() {
+        pop();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) {
+        int row = add(Node.ELEMENT_NODE, symbol(qName, uri));
+        int length = atts.getLength();
+
+        nodes[row * NODE_SIZE + VALUE] = attributeCount;
+        nodes[row * NODE_SIZE + LENGTH] = length;
+
+        for (int i = 0; i < length; i++) {
+            String name = atts.getQName(i);
+            String value = atts.getValue(i);
+
+            // Namespace declarations are in the xmlns namespace in DOM
+            String attributeURI = atts.getURI(i);
+            if (namespaceAware && (name.equals(XMLConstants.XMLNS_ATTRIBUTE) || name.startsWith("xmlns:"))) {
+                attributeURI = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            }
+
+            if (attributeCount * ATTRIBUTE_SIZE == attributes.length) {
+                attributes = Arrays.copyOf(attributes, attributes.length * 2);
+            }
+
+            int a = attributeCount++ * ATTRIBUTE_SIZE;
+            attributes[a + ATTRIBUTE_NAME] = symbol(name, attributeURI);
+            attributes[a + ATTRIBUTE_VALUE] = textLength;
+            attributes[a + ATTRIBUTE_LENGTH] = value.length();
+
+            appendText(value);
+        }
+
+        push(row);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        pop();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        int type = cdata ? Node.CDATA_SECTION_NODE : Node.TEXT_NODE;
+        int last = lastChild[depth - 1];
+
+        // Merge adjacent character data into a single node
+        if (last != NONE
+            && nodes[last * NODE_SIZE + TYPE] == type
+            && nodes[last * NODE_SIZE + VALUE] + nodes[last * NODE_SIZE + LENGTH] == textLength) {
+
+            nodes[last * NODE_SIZE + LENGTH] += length;
+        }
+        else {
+            int row = add(type, NONE);
+            nodes[row * NODE_SIZE + VALUE] = textLength;
+            nodes[row * NODE_SIZE + LENGTH] = length;
+        }
+
+        appendText(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        int row = add(Node.PROCESSING_INSTRUCTION_NODE, symbol(target, null));
+        String value = data == null ? "" : data;
+
+        nodes[row * NODE_SIZE + VALUE] = textLength;
+        nodes[row * NODE_SIZE + LENGTH] = value.length();
+
+        appendText(value);
+    }
+
+    // -------------------------------------------------------------------------
+    // LexicalHandler API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void startCDATA() {
+        cdata = true;
+
+        // CDATA sections are never merged with preceding character data
+        int row = add(Node.CDATA_SECTION_NODE, NONE);
+        nodes[row * NODE_SIZE + VALUE] = textLength;
+        nodes[row * NODE_SIZE + LENGTH] = 0;
+    }
+
+    @Override
+    public void endCDATA() {
+        cdata = false;
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) {
+        dtd = true;
+    }
+
+    @Override
+    public void endDTD() {
+        dtd = false;
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) {
+        if (!dtd) {
+            int row = add(Node.COMMENT_NODE, NONE);
+            nodes[row * NODE_SIZE + VALUE] = textLength;
+            nodes[row * NODE_SIZE + LENGTH] = length;
+
+            appendText(ch, start, length);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Table building
+    // -------------------------------------------------------------------------
+
+    /**
+     * Append a new node as the last child of the currently open node
+     */
+    private final int add(int type, int name) {
+        if (nodeCount * NODE_SIZE == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+
+        int row = nodeCount++;
+        int parent = depth > 0 ? open[depth - 1] : NONE;
+        int r = row * NODE_SIZE;
+
+        nodes[r + TYPE] = type;
+        nodes[r + NAME] = name;
+        nodes[r + PARENT] = parent;
+        nodes[r + PREVIOUS] = depth > 0 ? lastChild[depth - 1] : NONE;
+        nodes[r + END] = row + 1;
+
+        if (depth > 0) {
+            lastChild[depth - 1] = row;
+        }
+
+        return row;
+    }
+
+    private final void push(int row) {
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+            lastChild = Arrays.copyOf(lastChild, depth * 2);
+        }
+
+        open[depth] = row;
+        lastChild[depth] = NONE;
+        depth++;
+    }
+
+    private final void pop() {
+        int row = open[--depth];
+        nodes[row * NODE_SIZE + END] = nodeCount;
+    }
+
+    private final void appendText(String value) {
+        int length = value.length();
+        ensureText(length);
+
+        value.getChars(0, length, text, textLength);
+        textLength += length;
+    }
+
+    private final void appendText(char[] ch, int start, int length) {
+        ensureText(length);
+
+        System.arraycopy(ch, start, text, textLength, length);
+        textLength += length;
+    }
+
+    private final void ensureText(int length) {
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+        }
+    }
+
+    /**
+     * Intern a name in the JVM's symbol table.
+     * <p>
+     * This is the symbol table also used by XML parsers and jOOX filters, such
+     * that all documents share a single instance of every name, and name
+     * comparisons mostly succeed on reference equality.
+     */
+    static final String intern(String name) {
+        return name == null ? null : name.intern();
+    }
+
+    /**
+     * Intern a qualified name and namespace URI in the name table
+     */
+    private final int symbol(String qName, String uri) {
+        String namespaceURI = (uri == null || uri.length() == 0) ? null : uri;
+        String key = namespaceURI == null ? qName : qName + '\n' + namespaceURI;
+        Integer result = symbols.get(key);
+
+        if (result == null) {
+            if (nameCount == names.length) {
+                names = Arrays.copyOf(names, nameCount * 2);
+                namespaceURIs = Arrays.copyOf(namespaceURIs, nameCount * 2);
+                localNames = Arrays.copyOf(localNames, nameCount * 2);
+                prefixes = Arrays.copyOf(prefixes, nameCount * 2);
+            }
+
+            int colon = qName.indexOf(':');
+
+            names[nameCount] = intern(qName);
+            namespaceURIs[nameCount] = namespaceAware ? intern(namespaceURI) : null;
+            localNames[nameCount] = namespaceAware ? intern(qName.substring(colon + 1)) : null;
+            prefixes[nameCount] = namespaceAware && colon > 0 ? intern(qName.substring(0, colon)) : null;
+
+            result = nameCount++;
+            symbols.put(key, result);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.DOMException;
+
+/**
+ * The base class for text nodes and comments of a {@link CompactDocument}
+ *
+ * @author Lukas Eder
+ */
+abstract class CompactCharacterData extends CompactNode implements CharacterData {
+
+    CompactCharacterData(CompactDocument document, int index) {
+        super(document, index);
+    }
+
+    @Override
+    public String getNodeValue() {
+        return document.value(index);
+    }
+
+    @Override
+    public String getData() {
+        return document.value(index);
+    }
+
+    @Override
+    public int getLength() {
+        return document.length(index);
+    }
+
+    @Override
+    public String substringData(int offset, int count) {
+        int length = getLength();
+
+        if (offset < 0 || count < 0 || offset > length) {
+            throw new DOMException(DOMException.INDEX_SIZE_ERR, "Offset " + offset + " or count " + count + " out of bounds");
+        }
+
+        return getData().substring(offset, Math.min(length, offset + count));
+    }
+
+    // -------------------------------------------------------------------------
+    // CharacterData API: modification
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void setData(String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public void appendData(String arg) {
+        throw readOnly();
+    }
+
+    @Override
+    public void insertData(int offset, String arg) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteData(int offset, int count) {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceData(int offset, int count, String arg) {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * A utility class creating compact, immutable DOM documents.
+ * <p>
+ * Compact documents implement the read-only part of the DOM API on top of a
+ * few flat arrays, rather than one object per node, attribute and text. This
+ * considerably reduces their memory footprint, which is useful when many
+ * documents are held in memory only for lookups. Any attempt to modify a
+ * compact document results in a {@link org.w3c.dom.DOMException}.
+ * <p>
+ * Compact documents can be written to a flat binary layout. Documents read
+ * back from that layout are queried in place, e.g. in a memory-mapped file.
+ * Any other DOM document can be written to that layout as well, by copying
+ * it into a compact document first.
+ *
+ * @author Lukas Eder
+ */
+public final class CompactDOM {
+
+    /**
+     * Parse a compact, immutable DOM document
+     */
+    public static final Document parse(InputSource source, boolean namespaceAware) throws SAXException, IOException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(namespaceAware);
+
+            if (namespaceAware) {
+                factory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+            }
+
+            CompactBuilder builder = new CompactBuilder(namespaceAware, source.getSystemId());
+            XMLReader reader = factory.newSAXParser().getXMLReader();
+            reader.setContentHandler(builder);
+            reader.setProperty("http://xml.org/sax/properties/lexical-handler", builder);
+            reader.parse(source);
+
+            return builder.document();
+        }
+        catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a compact, immutable copy of any DOM document.
+     * <p>
+     * If the document is already compact, it is returned as it is.
+     */
+    public static final Document copy(Document document) {
+        if (document instanceof CompactDocument) {
+            return document;
+        }
+
+        CompactBuilder builder = new CompactBuilder(
+            CompactBuilder.isNamespaceAware(document),
+            document.getDocumentURI());
+        builder.copy(document);
+        return builder.document();
+    }
+
+    /**
+     * Write a document's binary layout to a stream.
+     * <p>
+     * Documents that are not compact are copied into a compact document
+     * first, see {@link #copy(Document)}.
+     */
+    public static final void write(Document document, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        ((CompactDocument) copy(document)).write(out);
+        out.flush();
+    }
+
+    /**
+     * Read a compact document from its binary layout in a buffer.
+     * <p>
+     * The buffer's content is not copied. If the buffer is a direct or a
+     * memory-mapped buffer, the document's nodes, attributes and texts reside
+     * off the Java heap. The buffer must not be modified afterwards.
+     */
+    public static final Document read(ByteBuffer buffer) {
+        return CompactDocument.read(buffer);
+    }
+
+    /**
+     * Read a compact document from its binary layout in a stream.
+     * <p>
+     * The stream is read completely into a heap buffer, which is considerably
+     * faster than parsing the equivalent XML. The stream is not closed.
+     */
+    public static final Document read(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+
+        return read(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Memory-map a compact document's binary layout from a file
+     */
+    public static final Document map(File file) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = f.getChannel();
+            return read(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally {
+            f.close();
+        }
+    }
+
+    private CompactDOM() {}
+}
@@ -0,0 +1,948 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+/**
+ * An immutable, compact, array-based DOM document.
+ * <p>
+ * All nodes of the document are stored in a single int node table, in
+ * document order. Each node occupies one row of {@link #NODE_SIZE} ints.
+ * Subtrees are contiguous, such that the descendants of a node are found
+ * between its row and its {@link #END}. Attributes are stored in a separate
+ * int attribute table. Element, attribute and processing instruction names
+ * are interned in a name table, whose strings are shared by all documents.
+ * All text content, including attribute values, is held in a single shared
+ * char text pool.
+ * <p>
+ * The tables are held in buffers. Parsed documents wrap heap arrays, whereas
+ * documents read from their binary layout (see {@link #write(DataOutputStream)})
+ * may reside in direct or memory-mapped buffers, off the Java heap.
+ * <p>
+ * {@link Node} objects are created lazily when they are first accessed. They
+ * are only weakly referenced by their document, such that node objects that
+ * are no longer used can be garbage collected, while a node's identity is
+ * preserved as long as it is referenced.
+ *
+ * @author Lukas Eder
+ */
+final class CompactDocument extends CompactNode implements Document {
+
+    /**
+     * A reference to no row, e.g. the parent of the document
+     */
+    static final int                               NONE             = -1;
+
+    // -------------------------------------------------------------------------
+    // The node table layout
+    // -------------------------------------------------------------------------
+
+    /**
+     * The {@link Node#getNodeType()} of a node
+     */
+    static final int                               TYPE             = 0;
+
+    /**
+     * The name table index of an element or processing instruction
+     */
+    static final int                               NAME             = 1;
+
+    /**
+     * The row of the parent node
+     */
+    static final int                               PARENT           = 2;
+
+    /**
+     * The row of the previous sibling node
+     */
+    static final int                               PREVIOUS         = 3;
+
+    /**
+     * The row after the last descendant of a node
+     */
+    static final int                               END              = 4;
+
+    /**
+     * The text pool offset of character data, or the attribute table index
+     * of an element's first attribute
+     */
+    static final int                               VALUE            = 5;
+
+    /**
+     * The text pool length of character data, or the number of attributes of
+     * an element
+     */
+    static final int                               LENGTH           = 6;
+
+    /**
+     * The number of ints per row in the node table
+     */
+    static final int                               NODE_SIZE        = 7;
+
+    // -------------------------------------------------------------------------
+    // The attribute table layout
+    // -------------------------------------------------------------------------
+
+    /**
+     * The name table index of an attribute
+     */
+    static final int                               ATTRIBUTE_NAME   = 0;
+
+    /**
+     * The text pool offset of an attribute value
+     */
+    static final int                               ATTRIBUTE_VALUE  = 1;
+
+    /**
+     * The text pool length of an attribute value
+     */
+    static final int                               ATTRIBUTE_LENGTH = 2;
+
+    /**
+     * The number of ints per attribute in the attribute table
+     */
+    static final int                               ATTRIBUTE_SIZE   = 3;
+
+    /**
+     * The magic number identifying the binary layout of compact documents
+     */
+    static final int                               MAGIC            = 0x4A4F4F58;
+
+    /**
+     * The version of the binary layout of compact documents
+     */
+    static final int                               VERSION          = 1;
+
+    /**
+     * A shared {@link DOMImplementation} for feature checks
+     */
+    private static volatile DOMImplementation      implementation;
+
+    // -------------------------------------------------------------------------
+    // The document data
+    // -------------------------------------------------------------------------
+
+    private final IntBuffer                        nodes;
+    private final IntBuffer                        attributes;
+    private final CharBuffer                       text;
+    private final String[]                         names;
+    private final String[]                         namespaceURIs;
+    private final String[]                         localNames;
+    private final String[]                         prefixes;
+    private final String                           documentURI;
+
+    private final AtomicReferenceArray<WeakReference<CompactNode>> nodeCache;
+    private final AtomicReferenceArray<WeakReference<CompactAttr>> attributeCache;
+
+    CompactDocument(
+        IntBuffer nodes,
+        IntBuffer attributes,
+        CharBuffer text,
+        String[] names,
+        String[] namespaceURIs,
+        String[] localNames,
+        String[] prefixes,
+        String documentURI) {
+
+        super(null, 0);
+
+        this.nodes = nodes;
+        this.attributes = attributes;
+        this.text = text;
+        this.names = names;
+        this.namespaceURIs = namespaceURIs;
+        this.localNames = localNames;
+        this.prefixes = prefixes;
+        this.documentURI = documentURI;
+
+        this.nodeCache = new AtomicReferenceArray<WeakReference<CompactNode>>(nodes.limit() / NODE_SIZE);
+        this.attributeCache = new AtomicReferenceArray<WeakReference<CompactAttr>>(attributes.limit() / ATTRIBUTE_SIZE);
+    }
+
+    // -------------------------------------------------------------------------
+    // Node table access
+    // -------------------------------------------------------------------------
+
+    /**
+     * The number of rows in the node table, including the document itself
+     */
+    final int size() {
+        return nodes.limit() / NODE_SIZE;
+    }
+
+    final int type(int row) {
+        return nodes.get(row * NODE_SIZE + TYPE);
+    }
+
+    final int name(int row) {
+        return nodes.get(row * NODE_SIZE + NAME);
+    }
+
+    final int parent(int row) {
+        return nodes.get(row * NODE_SIZE + PARENT);
+    }
+
+    final int previousSibling(int row) {
+        return nodes.get(row * NODE_SIZE + PREVIOUS);
+    }
+
+    final int end(int row) {
+        return nodes.get(row * NODE_SIZE + END);
+    }
+
+    final int firstChild(int row) {
+        return row + 1 < end(row) ? row + 1 : NONE;
+    }
+
+    final int nextSibling(int row) {
+        int parent = parent(row);
+
+        if (parent == NONE) {
+            return NONE;
+        }
+
+        int next = end(row);
+        return next < end(parent) ? next : NONE;
+    }
+
+    final int lastChild(int row) {
+        int end = end(row);
+        int result = NONE;
+
+        for (int child = firstChild(row); child != NONE && child < end; child = end(child)) {
+            result = child;
+        }
+
+        return result;
+    }
+
+    /**
+     * The character data of a text node, comment or processing instruction
+     */
+    final String value(int row) {
+        return string(nodes.get(row * NODE_SIZE + VALUE), nodes.get(row * NODE_SIZE + LENGTH));
+    }
+
+    /**
+     * Read a string from the text pool
+     */
+    private final String string(int offset, int length) {
+        if (text.hasArray()) {
+            return new String(text.array(), text.arrayOffset() + offset, length);
+        }
+        else {
+            return text.subSequence(offset, offset + length).toString();
+        }
+    }
+
+    /**
+     * The length of the character data of a text node, comment or processing
+     * instruction
+     */
+    final int length(int row) {
+        return nodes.get(row * NODE_SIZE + LENGTH);
+    }
+
+    /**
+     * The concatenated text content of all text descendants of a node
+     */
+    final String textContent(int row) {
+        switch (type(row)) {
+            case ELEMENT_NODE:
+            case DOCUMENT_NODE: {
+                int end = end(row);
+
+                // The most common case: a single text node
+                if (end == row + 2 && isText(row + 1)) {
+                    return value(row + 1);
+                }
+
+                StringBuilder sb = new StringBuilder();
+                for (int i = row + 1; i < end; i++) {
+                    if (isText(i)) {
+                        int offset = nodes.get(i * NODE_SIZE + VALUE);
+                        sb.append(text, offset, offset + nodes.get(i * NODE_SIZE + LENGTH));
+                    }
+                }
+
+                return sb.toString();
+            }
+
+            default:
+                return value(row);
+        }
+    }
+
+    final boolean isText(int row) {
+        int type = type(row);
+        return type == TEXT_NODE || type == CDATA_SECTION_NODE;
+    }
+
+    final String nodeName(int row) {
+        return names[name(row)];
+    }
+
+    final String namespaceURI(int row) {
+        return namespaceURIs[name(row)];
+    }
+
+    final String localName(int row) {
+        return localNames[name(row)];
+    }
+
+    final String prefix(int row) {
+        return prefixes[name(row)];
+    }
+
+    /**
+     * Get the node object for a row, creating it if necessary
+     */
+    final CompactNode node(int row) {
+        if (row == NONE) {
+            return null;
+        }
+        else if (row == 0) {
+            return this;
+        }
+
+        WeakReference<CompactNode> reference = nodeCache.get(row);
+        CompactNode result = reference == null ? null : reference.get();
+
+        // Preserve node identity in case of concurrent access
+        while (result == null) {
+            CompactNode created = createNode(row);
+
+            if (nodeCache.compareAndSet(row, reference, new WeakReference<CompactNode>(created))) {
+                result = created;
+            }
+            else {
+                reference = nodeCache.get(row);
+                result = reference == null ? null : reference.get();
+            }
+        }
+
+        return result;
+    }
+
+    private final CompactNode createNode(int row) {
+        switch (type(row)) {
+            case ELEMENT_NODE:
+                return new CompactElement(this, row);
+
+            case TEXT_NODE:
+                return new CompactText(this, row);
+
+            case CDATA_SECTION_NODE:
+                return new CompactCDATASection(this, row);
+
+            case COMMENT_NODE:
+                return new CompactComment(this, row);
+
+            case PROCESSING_INSTRUCTION_NODE:
+                return new CompactProcessingInstruction(this, row);
+
+            default:
+                throw new IllegalStateException("Unknown node type : " + type(row));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Attribute table access
+    // -------------------------------------------------------------------------
+
+    final int firstAttribute(int row) {
+        return nodes.get(row * NODE_SIZE + VALUE);
+    }
+
+    final int attributeCount(int row) {
+        return type(row) == ELEMENT_NODE ? nodes.get(row * NODE_SIZE + LENGTH) : 0;
+    }
+
+    final String attributeName(int attribute) {
+        return names[attributes.get(attribute * ATTRIBUTE_SIZE + ATTRIBUTE_NAME)];
+    }
+
+    final String attributeNamespaceURI(int attribute) {
+        return namespaceURIs[attributes.get(attribute * ATTRIBUTE_SIZE + ATTRIBUTE_NAME)];
+    }
+
+    final String attributeLocalName(int attribute) {
+        return localNames[attributes.get(attribute * ATTRIBUTE_SIZE + ATTRIBUTE_NAME)];
+    }
+
+    final String attributePrefix(int attribute) {
+        return prefixes[attributes.get(attribute * ATTRIBUTE_SIZE + ATTRIBUTE_NAME)];
+    }
+
+    final String attributeValue(int attribute) {
+        return string(
+            attributes.get(attribute * ATTRIBUTE_SIZE + ATTRIBUTE_VALUE),
+            attributes.get(attribute * ATTRIBUTE_SIZE + ATTRIBUTE_LENGTH));
+    }
+
+    /**
+     * Find an element's attribute by its qualified name
+     */
+    final int attribute(int row, String name) {
+        int first = firstAttribute(row);
+        int end = first + attributeCount(row);
+
+        for (int i = first; i < end; i++) {
+            if (attributeName(i).equals(name)) {
+                return i;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Find an element's attribute by its namespace URI and local name
+     */
+    final int attribute(int row, String namespaceURI, String localName) {
+        int first = firstAttribute(row);
+        int end = first + attributeCount(row);
+        String uri = "".equals(namespaceURI) ? null : namespaceURI;
+
+        for (int i = first; i < end; i++) {
+            String attributeURI = attributeNamespaceURI(i);
+
+            if ((uri == null ? attributeURI == null : uri.equals(attributeURI))
+                && localName != null
+                && localName.equals(attributeLocalName(i))) {
+
+                return i;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Get the attribute object for an attribute, creating it if necessary
+     */
+    final CompactAttr attributeNode(int attribute, int owner) {
+        if (attribute == NONE) {
+            return null;
+        }
+
+        WeakReference<CompactAttr> reference = attributeCache.get(attribute);
+        CompactAttr result = reference == null ? null : reference.get();
+
+        while (result == null) {
+            CompactAttr created = new CompactAttr(this, attribute, owner);
+
+            if (attributeCache.compareAndSet(attribute, reference, new WeakReference<CompactAttr>(created))) {
+                result = created;
+            }
+            else {
+                reference = attributeCache.get(attribute);
+                result = reference == null ? null : reference.get();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the namespace URI declared for a prefix on an element, or
+     * <code>null</code> if the prefix is not declared on that element
+     */
+    final String declaredNamespaceURI(int row, String prefix) {
+        int first = firstAttribute(row);
+        int end = first + attributeCount(row);
+
+        for (int i = first; i < end; i++) {
+            String name = attributeName(i);
+
+            if (prefix == null ? name.equals("xmlns") : (name.startsWith("xmlns:") && name.endsWith(prefix) && name.length() == prefix.length() + 6)) {
+                return attributeValue(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get a prefix declared for a namespace URI on an element, or
+     * <code>null</code> if no such prefix is declared on that element
+     */
+    final String declaredPrefix(int row, String namespaceURI) {
+        int first = firstAttribute(row);
+        int end = first + attributeCount(row);
+
+        for (int i = first; i < end; i++) {
+            String name = attributeName(i);
+
+            if (name.startsWith("xmlns:") && namespaceURI.equals(attributeValue(i))) {
+                return name.substring(6);
+            }
+        }
+
+        return null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Element lookups
+    // -------------------------------------------------------------------------
+
+    /**
+     * Find all descendant elements of a node by their qualified name, or
+     * <code>"*"</code>
+     */
+    final NodeList elementsByTagName(int row, String name) {
+        boolean[] matches = new boolean[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            matches[i] = "*".equals(name) || names[i].equals(name);
+        }
+
+        return elements(row, matches);
+    }
+
+    /**
+     * Find all descendant elements of a node by their namespace URI and local
+     * name, either of which may be <code>"*"</code>
+     */
+    final NodeList elementsByTagNameNS(int row, String namespaceURI, String localName) {
+        boolean[] matches = new boolean[names.length];
+        boolean anyNamespace = "*".equals(namespaceURI);
+        boolean anyName = "*".equals(localName);
+        String uri = "".equals(namespaceURI) ? null : namespaceURI;
+
+        for (int i = 0; i < names.length; i++) {
+            matches[i] = localNames[i] != null
+                && (anyName || localNames[i].equals(localName))
+                && (anyNamespace || (uri == null ? namespaceURIs[i] == null : uri.equals(namespaceURIs[i])));
+        }
+
+        return elements(row, matches);
+    }
+
+    /**
+     * Find all descendant elements of a node whose name is matched. Names are
+     * interned, so this only needs to compare name table indexes.
+     */
+    private final NodeList elements(int row, boolean[] matches) {
+        int end = end(row);
+        int[] result = new int[8];
+        int size = 0;
+
+        for (int i = row + 1; i < end; i++) {
+            if (type(i) == ELEMENT_NODE && matches[name(i)]) {
+                if (size == result.length) {
+                    int[] copy = new int[size * 2];
+                    System.arraycopy(result, 0, copy, 0, size);
+                    result = copy;
+                }
+
+                result[size++] = i;
+            }
+        }
+
+        return new Elements(this, result, size);
+    }
+
+    // -------------------------------------------------------------------------
+    // Binary layout
+    // -------------------------------------------------------------------------
+
+    /**
+     * Write this document's binary layout.
+     * <p>
+     * The layout consists of a header, the node table, the attribute table,
+     * the text pool and the name table, in this order. All values are
+     * big-endian. The tables are written as they are, such that
+     * {@link #read(ByteBuffer)} can use them without parsing or copying.
+     */
+    final void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(nodes.limit());
+        out.writeInt(attributes.limit());
+        out.writeInt(text.limit());
+        out.writeInt(names.length);
+
+        for (int i = 0; i < nodes.limit(); i++) {
+            out.writeInt(nodes.get(i));
+        }
+
+        for (int i = 0; i < attributes.limit(); i++) {
+            out.writeInt(attributes.get(i));
+        }
+
+        for (int i = 0; i < text.limit(); i++) {
+            out.writeChar(text.get(i));
+        }
+
+        writeString(out, documentURI);
+        for (int i = 0; i < names.length; i++) {
+            writeString(out, names[i]);
+            writeString(out, namespaceURIs[i]);
+            writeString(out, localNames[i]);
+            writeString(out, prefixes[i]);
+        }
+    }
+
+    /**
+     * Read a document from its binary layout, starting at the buffer's
+     * current position.
+     * <p>
+     * The resulting document's tables are views of the buffer's content. Only
+     * the small name table is read onto the heap. All lengths are checked
+     * against the buffer's remaining content before they are used.
+     *
+     * @throws IllegalArgumentException If the buffer does not contain a
+     *             complete compact document
+     */
+    static final CompactDocument read(ByteBuffer buffer) {
+        ByteBuffer b = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+
+        if (b.remaining() < 24 || b.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Buffer does not contain a compact document");
+        }
+
+        int version = b.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported compact document version : " + version);
+        }
+
+        int nodeLength = b.getInt();
+        int attributeLength = b.getInt();
+        int textLength = b.getInt();
+        int nameCount = b.getInt();
+
+        if (nodeLength < NODE_SIZE || nodeLength % NODE_SIZE != 0) {
+            throw corrupt("illegal node table length " + nodeLength);
+        }
+        else if (attributeLength < 0 || attributeLength % ATTRIBUTE_SIZE != 0) {
+            throw corrupt("illegal attribute table length " + attributeLength);
+        }
+
+        IntBuffer nodes = slice(b, nodeLength * 4L, "node table").asIntBuffer();
+        IntBuffer attributes = slice(b, attributeLength * 4L, "attribute table").asIntBuffer();
+        CharBuffer text = slice(b, textLength * 2L, "text pool").asCharBuffer();
+
+        String documentURI = readString(b);
+
+        // Every name consists of four strings of at least four bytes each
+        if (nameCount < 0 || nameCount > b.remaining() / 16) {
+            throw corrupt("illegal name table length " + nameCount);
+        }
+
+        String[] names = new String[nameCount];
+        String[] namespaceURIs = new String[nameCount];
+        String[] localNames = new String[nameCount];
+        String[] prefixes = new String[nameCount];
+
+        for (int i = 0; i < nameCount; i++) {
+            names[i] = CompactBuilder.intern(readString(b));
+            namespaceURIs[i] = CompactBuilder.intern(readString(b));
+            localNames[i] = CompactBuilder.intern(readString(b));
+            prefixes[i] = CompactBuilder.intern(readString(b));
+        }
+
+        return new CompactDocument(nodes, attributes, text, names, namespaceURIs, localNames, prefixes, documentURI);
+    }
+
+    /**
+     * Slice a given number of bytes off a buffer, advancing its position
+     */
+    private static final ByteBuffer slice(ByteBuffer buffer, long length, String table) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw corrupt("illegal " + table + " length " + length + ", " + buffer.remaining() + " bytes remaining");
+        }
+
+        ByteBuffer result = buffer.slice();
+        result.limit((int) length);
+        buffer.position(buffer.position() + (int) length);
+        return result;
+    }
+
+    private static final IllegalArgumentException corrupt(String message) {
+        return new IllegalArgumentException("Corrupt compact document: " + message);
+    }
+
+    private static final void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        }
+        else {
+            out.writeInt(string.length());
+            out.writeChars(string);
+        }
+    }
+
+    private static final String readString(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) {
+            throw corrupt("truncated name table");
+        }
+
+        int length = buffer.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+        else if (length > buffer.remaining() / 2) {
+            throw corrupt("illegal string length " + length + ", " + buffer.remaining() + " bytes remaining");
+        }
+
+        char[] chars = new char[length];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + length * 2);
+        return new String(chars);
+    }
+
+    // -------------------------------------------------------------------------
+    // Node API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String getNodeName() {
+        return "#document";
+    }
+
+    @Override
+    public short getNodeType() {
+        return DOCUMENT_NODE;
+    }
+
+    @Override
+    public String getTextContent() {
+        return null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Document API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public DocumentType getDoctype() {
+        return null;
+    }
+
+    @Override
+    public DOMImplementation getImplementation() {
+        if (implementation == null) {
+            try {
+                implementation = DocumentBuilderFactory.newInstance().newDocumentBuilder().getDOMImplementation();
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return implementation;
+    }
+
+    @Override
+    public Element getDocumentElement() {
+        for (int row = firstChild(0); row != NONE; row = nextSibling(row)) {
+            if (type(row) == ELEMENT_NODE) {
+                return (Element) node(row);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public NodeList getElementsByTagName(String tagname) {
+        return elementsByTagName(0, tagname);
+    }
+
+    @Override
+    public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+        return elementsByTagNameNS(0, namespaceURI, localName);
+    }
+
+    @Override
+    public Element getElementById(String elementId) {
+        return null;
+    }
+
+    @Override
+    public String getInputEncoding() {
+        return null;
+    }
+
+    @Override
+    public String getXmlEncoding() {
+        return null;
+    }
+
+    @Override
+    public boolean getXmlStandalone() {
+        return false;
+    }
+
+    @Override
+    public String getXmlVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public boolean getStrictErrorChecking() {
+        return true;
+    }
+
+    @Override
+    public void setStrictErrorChecking(boolean strictErrorChecking) {
+    }
+
+    @Override
+    public String getDocumentURI() {
+        return documentURI;
+    }
+
+    @Override
+    public DOMConfiguration getDomConfig() {
+        return null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Document API: modification
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Element createElement(String tagName) {
+        throw readOnly();
+    }
+
+    @Override
+    public DocumentFragment createDocumentFragment() {
+        throw readOnly();
+    }
+
+    @Override
+    public Text createTextNode(String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public Comment createComment(String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public CDATASection createCDATASection(String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public ProcessingInstruction createProcessingInstruction(String target, String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr createAttribute(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public EntityReference createEntityReference(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node importNode(Node importedNode, boolean deep) {
+        throw readOnly();
+    }
+
+    @Override
+    public Element createElementNS(String namespaceURI, String qualifiedName) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr createAttributeNS(String namespaceURI, String qualifiedName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setXmlStandalone(boolean xmlStandalone) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setXmlVersion(String xmlVersion) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDocumentURI(String documentURI) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node adoptNode(Node source) {
+        throw readOnly();
+    }
+
+    @Override
+    public void normalizeDocument() {
+    }
+
+    @Override
+    public Node renameNode(Node n, String namespaceURI, String qualifiedName) {
+        throw readOnly();
+    }
+}
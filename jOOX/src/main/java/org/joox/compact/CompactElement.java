@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import static org.joox.compact.CompactDocument.NONE;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * An element of a {@link CompactDocument}
+ *
+ * @author Lukas Eder
+ */
+final class CompactElement extends CompactNode implements Element {
+
+    CompactElement(CompactDocument document, int index) {
+        super(document, index);
+    }
+
+    // -------------------------------------------------------------------------
+    // Node API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String getNodeName() {
+        return document.nodeName(index);
+    }
+
+    @Override
+    public short getNodeType() {
+        return ELEMENT_NODE;
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return document.namespaceURI(index);
+    }
+
+    @Override
+    public String getPrefix() {
+        return document.prefix(index);
+    }
+
+    @Override
+    public String getLocalName() {
+        return document.localName(index);
+    }
+
+    @Override
+    public NamedNodeMap getAttributes() {
+        return new Attributes(document, index);
+    }
+
+    @Override
+    public boolean hasAttributes() {
+        return document.attributeCount(index) > 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // Element API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String getTagName() {
+        return document.nodeName(index);
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        int attribute = document.attribute(index, name);
+        return attribute == NONE ? "" : document.attributeValue(attribute);
+    }
+
+    @Override
+    public Attr getAttributeNode(String name) {
+        return document.attributeNode(document.attribute(index, name), index);
+    }
+
+    @Override
+    public boolean hasAttribute(String name) {
+        return document.attribute(index, name) != NONE;
+    }
+
+    @Override
+    public String getAttributeNS(String namespaceURI, String localName) {
+        int attribute = document.attribute(index, namespaceURI, localName);
+        return attribute == NONE ? "" : document.attributeValue(attribute);
+    }
+
+    @Override
+    public Attr getAttributeNodeNS(String namespaceURI, String localName) {
+        return document.attributeNode(document.attribute(index, namespaceURI, localName), index);
+    }
+
+    @Override
+    public boolean hasAttributeNS(String namespaceURI, String localName) {
+        return document.attribute(index, namespaceURI, localName) != NONE;
+    }
+
+    @Override
+    public NodeList getElementsByTagName(String name) {
+        return document.elementsByTagName(index, name);
+    }
+
+    @Override
+    public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+        return document.elementsByTagNameNS(index, namespaceURI, localName);
+    }
+
+    @Override
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Element API: modification
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void setAttribute(String name, String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr setAttributeNode(Attr newAttr) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr removeAttributeNode(Attr oldAttr) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAttributeNS(String namespaceURI, String qualifiedName, String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeAttributeNS(String namespaceURI, String localName) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr setAttributeNodeNS(Attr newAttr) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setIdAttribute(String name, boolean isId) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setIdAttributeNS(String namespaceURI, String localName, boolean isId) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setIdAttributeNode(Attr idAttr, boolean isId) {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,405 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.compact;
+
+import static org.joox.compact.CompactDocument.NONE;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * The base class for all nodes of a {@link CompactDocument}.
+ * <p>
+ * A node is a lightweight view of a row in the document's node table. It
+ * holds no state other than its document and its row index. Node objects are
+ * created lazily and cached by the document, such that node identity is
+ * preserved.
+ *
+ * @author Lukas Eder
+ */
+abstract class CompactNode implements Node {
+
+    final CompactDocument document;
+    final int             index;
+
+    CompactNode(CompactDocument document, int index) {
+
+        // The document is its own document
+        this.document = (document == null) ? (CompactDocument) this : document;
+        this.index = index;
+    }
+
+    // -------------------------------------------------------------------------
+    // Node API: structure
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Node getParentNode() {
+        return document.node(document.parent(index));
+    }
+
+    @Override
+    public NodeList getChildNodes() {
+        return new ChildNodes(document, index);
+    }
+
+    @Override
+    public Node getFirstChild() {
+        return document.node(document.firstChild(index));
+    }
+
+    @Override
+    public Node getLastChild() {
+        return document.node(document.lastChild(index));
+    }
+
+    @Override
+    public Node getPreviousSibling() {
+        return document.node(document.previousSibling(index));
+    }
+
+    @Override
+    public Node getNextSibling() {
+        return document.node(document.nextSibling(index));
+    }
+
+    @Override
+    public boolean hasChildNodes() {
+        return document.firstChild(index) != NONE;
+    }
+
+    @Override
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+
+    @Override
+    public boolean hasAttributes() {
+        return false;
+    }
+
+    @Override
+    public Document getOwnerDocument() {
+        return document;
+    }
+
+    @Override
+    public String getNodeValue() {
+        return null;
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    @Override
+    public String getPrefix() {
+        return null;
+    }
+
+    @Override
+    public String getLocalName() {
+        return null;
+    }
+
+    @Override
+    public String getBaseURI() {
+        return document.getDocumentURI();
+    }
+
+    @Override
+    public String getTextContent() {
+        return document.textContent(index);
+    }
+
+    // -------------------------------------------------------------------------
+    // Node API: comparison and lookups
+    // -------------------------------------------------------------------------
+
+    @Override
+    public short compareDocumentPosition(Node other) {
+        if (other == this) {
+            return 0;
+        }
+        else if (!(other instanceof CompactNode) || ((CompactNode) other).document != document) {
+            return (short) (DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+                | (System.identityHashCode(this) < System.identityHashCode(other)
+                    ? DOCUMENT_POSITION_FOLLOWING
+                    : DOCUMENT_POSITION_PRECEDING));
+        }
+
+        CompactNode that = (CompactNode) other;
+        boolean thisAttr = this instanceof CompactAttr;
+        boolean thatAttr = that instanceof CompactAttr;
+        int thisRow = this.row();
+        int thatRow = that.row();
+
+        // Attributes follow their owner element, in the order of their index
+        if (thisRow == thatRow) {
+            if (thisAttr && thatAttr) {
+                return (short) (that.index < index
+                    ? DOCUMENT_POSITION_PRECEDING | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+                    : DOCUMENT_POSITION_FOLLOWING | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC);
+            }
+            else if (thisAttr) {
+                return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+            }
+            else {
+                return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+            }
+        }
+
+        // Rows are in document order, and subtrees are contiguous
+        else if (thatRow < thisRow) {
+            return (!thatAttr && document.end(thatRow) > thisRow)
+                ? DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING
+                : DOCUMENT_POSITION_PRECEDING;
+        }
+        else {
+            return (!thisAttr && document.end(thisRow) > thatRow)
+                ? DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING
+                : DOCUMENT_POSITION_FOLLOWING;
+        }
+    }
+
+    /**
+     * The row of this node in the node table. For attributes, this is the row
+     * of their owner element.
+     */
+    int row() {
+        return index;
+    }
+
+    @Override
+    public boolean isSameNode(Node other) {
+        return other == this;
+    }
+
+    @Override
+    public boolean isEqualNode(Node other) {
+        if (other == this) {
+            return true;
+        }
+        else if (other == null
+            || other.getNodeType() != getNodeType()
+            || !equal(getNodeName(), other.getNodeName())
+            || !equal(getLocalName(), other.getLocalName())
+            || !equal(getNamespaceURI(), other.getNamespaceURI())
+            || !equal(getPrefix(), other.getPrefix())
+            || !equal(getNodeValue(), other.getNodeValue())) {
+
+            return false;
+        }
+
+        NamedNodeMap attributes = getAttributes();
+        NamedNodeMap otherAttributes = other.getAttributes();
+
+        if (attributes != null) {
+            if (otherAttributes == null || attributes.getLength() != otherAttributes.getLength()) {
+                return false;
+            }
+
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                Node otherAttribute = attribute.getLocalName() == null
+                    ? otherAttributes.getNamedItem(attribute.getNodeName())
+                    : otherAttributes.getNamedItemNS(attribute.getNamespaceURI(), attribute.getLocalName());
+
+                if (otherAttribute == null || !attribute.isEqualNode(otherAttribute)) {
+                    return false;
+                }
+            }
+        }
+
+        Node child = getFirstChild();
+        Node otherChild = other.getFirstChild();
+
+        while (child != null && otherChild != null) {
+            if (!child.isEqualNode(otherChild)) {
+                return false;
+            }
+
+            child = child.getNextSibling();
+            otherChild = otherChild.getNextSibling();
+        }
+
+        return child == null && otherChild == null;
+    }
+
+    @Override
+    public String lookupPrefix(String namespaceURI) {
+        if (namespaceURI == null) {
+            return null;
+        }
+
+        for (int row = row(); row != NONE; row = document.parent(row)) {
+            if (document.type(row) == ELEMENT_NODE) {
+                if (namespaceURI.equals(document.namespaceURI(row)) && document.prefix(row) != null) {
+                    return document.prefix(row);
+                }
+
+                String prefix = document.declaredPrefix(row, namespaceURI);
+                if (prefix != null) {
+                    return prefix;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String lookupNamespaceURI(String prefix) {
+        for (int row = row(); row != NONE; row = document.parent(row)) {
+            if (document.type(row) == ELEMENT_NODE) {
+                String namespaceURI = document.declaredNamespaceURI(row, prefix);
+
+                if (namespaceURI != null) {
+                    return namespaceURI.length() == 0 ? null : namespaceURI;
+                }
+            }
+        }
+
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean isDefaultNamespace(String namespaceURI) {
+        String defaultNamespace = lookupNamespaceURI(null);
+        return defaultNamespace == null ? namespaceURI == null : defaultNamespace.equals(namespaceURI);
+    }
+
+    @Override
+    public boolean isSupported(String feature, String version) {
+        return document.getImplementation().hasFeature(feature, version);
+    }
+
+    @Override
+    public Object getFeature(String feature, String version) {
+        return isSupported(feature, version) ? this : null;
+    }
+
+    @Override
+    public Object getUserData(String key) {
+        return null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Node API: modification
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void setNodeValue(String nodeValue) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node insertBefore(Node newChild, Node refChild) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node replaceChild(Node newChild, Node oldChild) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node removeChild(Node oldChild) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node appendChild(Node newChild) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node cloneNode(boolean deep) {
+        throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Compact documents cannot be cloned. Use Document.importNode() on a mutable document instead");
+    }
+
+    @Override
+    public void normalize() {
+
+        // Compact documents never contain adjacent text nodes
+    }
+
+    @Override
+    public void setPrefix(String prefix) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setTextContent(String textContent) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object setUserData(String key, Object data, UserDataHandler handler) {
+        throw readOnly();
+    }
+
+    // -------------------------------------------------------------------------
+    // Utilities
+    // -------------------------------------------------------------------------
+
+    /**
+     * Create an exception for attempts to modify a compact document
+     */
+    static final DOMException readOnly() {
+        return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, "Compact documents are read-only");
+    }
+
+    private static final boolean equal(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + getNodeName() + ": " + getNodeValue() + "]";
+    }
+}
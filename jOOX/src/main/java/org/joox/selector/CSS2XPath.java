@@ -35,7 +35,14 @@
  */
 package org.joox.selector;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
 
 /**
  * A utility class converting CSS selector expressions to XPath expressions.
@@ -52,6 +59,12 @@ import java.util.List;
  */
 public final class CSS2XPath {
 
+    /**
+     * A namespaced type selector, such as <code>ns|E</code>, <code>*|E</code>
+     * or <code>|E</code>
+     */
+    private static final Pattern NAMESPACED_TAG = Pattern.compile("(\\*|[\\w\\-]*)\\|(\\*|[\\w\\-]+)");
+
     /**
      * Convert a CSS selector expression to an XPath expression
      */
@@ -63,7 +76,22 @@ public final class CSS2XPath {
      * Convert a CSS selector expression to an XPath expression
      */
     public static final String css2xpath(String css, boolean isRoot) {
-        Scanner scanner = new Scanner(css);
+        return css2xpath(css, isRoot, null);
+    }
+
+    /**
+     * Convert a CSS selector expression to an XPath expression, checking that
+     * all namespace prefixes of namespaced type selectors are bound in a
+     * namespace context.
+     *
+     * @throws IllegalArgumentException If a namespace prefix is not bound
+     */
+    public static final String css2xpath(String css, boolean isRoot, NamespaceContext namespaces) {
+
+        // The scanner does not support namespaced type selectors. Replace
+        // them by placeholder tag names, which are rendered as XPath below
+        Map<String, String> tags = new HashMap<String, String>();
+        Scanner scanner = new Scanner(namespacedTags(css, tags, namespaces));
         List<List<Selector>> selectors = scanner.scan();
 
         StringBuilder sb = new StringBuilder();
@@ -97,7 +125,8 @@ public final class CSS2XPath {
                         break;
                 }
 
-                sb.append(s.getTagName());
+                String tag = tags.get(s.getTagName());
+                sb.append(tag != null ? tag : s.getTagName());
 
                 if (s.hasSpecifiers()) {
                     for (Specifier specifier : s.getSpecifiers()) {
@@ -239,6 +268,92 @@ public final class CSS2XPath {
         return sb.toString();
     }
 
+    /**
+     * Replace all namespaced type selectors outside of attribute specifiers
+     * and strings by unique placeholder tag names. The XPath node tests
+     * corresponding to the placeholders are collected in <code>tags</code>.
+     * Namespace prefixes are resolved in <code>namespaces</code>, if
+     * available.
+     */
+    private static String namespacedTags(String css, Map<String, String> tags, NamespaceContext namespaces) {
+        if (css.indexOf('|') < 0) {
+            return css;
+        }
+
+        // Find a placeholder prefix that doesn't collide with any tag names
+        String placeholder = "jooxns";
+        while (css.contains(placeholder)) {
+            placeholder = placeholder + "x";
+        }
+
+        StringBuffer sb = new StringBuffer();
+        int start = 0;
+
+        for (int i = 0; i <= css.length(); i++) {
+            char c = i < css.length() ? css.charAt(i) : 0;
+
+            if (i == css.length() || c == '[' || c == '"' || c == '\'') {
+                Matcher matcher = NAMESPACED_TAG.matcher(css.substring(start, i));
+
+                while (matcher.find()) {
+                    if (namespaces != null) {
+                        resolve(namespaces, matcher.group(1));
+                    }
+
+                    String tag = placeholder + tags.size();
+                    tags.put(tag, nodeTest(matcher.group(1), matcher.group(2)));
+                    matcher.appendReplacement(sb, tag);
+                }
+
+                matcher.appendTail(sb);
+
+                // Attribute specifiers may contain |= operators. Copy them,
+                // as well as strings, unchanged
+                if (i < css.length()) {
+                    int end = css.indexOf(c == '[' ? ']' : c, i + 1);
+
+                    start = (end < 0) ? css.length() : end + 1;
+                    sb.append(css, i, start);
+                    i = start - 1;
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Check whether a namespace prefix of a namespaced type selector is bound.
+     * <code>"*"</code> stands for any namespace and <code>""</code> for no
+     * namespace.
+     */
+    private static void resolve(NamespaceContext namespaces, String prefix) {
+        if (!"*".equals(prefix) && !"".equals(prefix)
+            && XMLConstants.NULL_NS_URI.equals(namespaces.getNamespaceURI(prefix))) {
+
+            throw new IllegalArgumentException("Namespace prefix " + prefix + " is not bound. Use Match.namespace(String, String) to bind it");
+        }
+    }
+
+    /**
+     * Render a namespaced type selector as an XPath node test
+     */
+    private static String nodeTest(String prefix, String localName) {
+        boolean anyName = "*".equals(localName);
+
+        if ("*".equals(prefix)) {
+            return anyName ? "*" : "*[local-name()='" + localName + "']";
+        }
+        else if ("".equals(prefix)) {
+            return anyName
+                ? "*[namespace-uri()='']"
+                : "*[local-name()='" + localName + "' and namespace-uri()='']";
+        }
+        else {
+            return prefix + ":" + localName;
+        }
+    }
+
     /**
      * XPath 2.0<br/><br/><code>ends-with($str1, $str2)</code><br/><br/> is equivalent to XPath 1.0<br/><br/>
      * <code>$str2 = substring($str1, string-length($str1) - string-length($str2) + 1)</code>
@@ -0,0 +1,575 @@
+/**
+ * Copyright (c) 2011-2012, Lukas Eder, lukas.eder@gmail.com
+ * All rights reserved.
+ *
+ * This software is licensed to you under the Apache License, Version 2.0
+ * (the "License"); You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * . Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * . Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * . Neither the name "jOOX" nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.joox.selector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A utility class matching many CSS selector expressions against elements in
+ * a single tree walk.
+ * <p>
+ * Every selector is split into its comma-separated groups. The groups are
+ * hashed by the id, class or type selector of their rightmost compound
+ * selector, such that each element is only checked against the groups that
+ * can possibly match it. Remaining combinators are checked by walking up the
+ * ancestors or previous siblings of a candidate element.
+ * <p>
+ * Namespaced type selectors, sibling combinators, negations and
+ * <code>:nth-*</code> pseudo-classes are not supported. Clients should
+ * evaluate such selectors using {@link CSS2XPath#css2xpath(String, boolean)}
+ * instead, such that both produce the same results.
+ *
+ * @author Lukas Eder
+ */
+public final class CSSMatcher {
+
+    private final int                     size;
+    private final boolean[]               supported;
+    private final List<List<Rule>>        rules;
+    private final List<Rule>              universal;
+    private final Map<String, List<Rule>> tags;
+    private final Map<String, List<Rule>> ids;
+    private final Map<String, List<Rule>> classes;
+
+    /**
+     * Compile a set of CSS selector expressions
+     */
+    public CSSMatcher(String... selectors) {
+        this.size = selectors.length;
+        this.supported = new boolean[size];
+        this.rules = new ArrayList<List<Rule>>(size);
+        this.universal = new ArrayList<Rule>();
+        this.tags = new HashMap<String, List<Rule>>();
+        this.ids = new HashMap<String, List<Rule>>();
+        this.classes = new HashMap<String, List<Rule>>();
+
+        for (int i = 0; i < size; i++) {
+            List<Rule> compiled = compile(i, selectors[i]);
+            rules.add(compiled);
+
+            if (compiled != null) {
+                supported[i] = true;
+
+                for (Rule rule : compiled) {
+                    index(rule);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the selector at a given index can be evaluated by this matcher
+     */
+    public boolean isSupported(int index) {
+        return supported[index];
+    }
+
+    /**
+     * Find all descendants of the given context elements matching each
+     * selector.
+     * <p>
+     * If <code>isRoot</code> is set, the whole document is searched, like
+     * {@link CSS2XPath#css2xpath(String, boolean)} does. The resulting list
+     * contains one list of elements per selector, or <code>null</code> for
+     * unsupported selectors. Every element is contained at most once per
+     * selector, even if it is a descendant of several context elements.
+     */
+    public List<List<Element>> select(List<Element> contexts, boolean isRoot) {
+        List<List<Element>> result = new ArrayList<List<Element>>(size);
+        List<Set<Element>> seen = new ArrayList<Set<Element>>(size);
+
+        for (int i = 0; i < size; i++) {
+            result.add(supported[i] ? new ArrayList<Element>() : null);
+            seen.add(supported[i] ? Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>()) : null);
+        }
+
+        if (isRoot && !contexts.isEmpty()) {
+            Element root = contexts.get(0).getOwnerDocument().getDocumentElement();
+
+            select(root, null, true, result, seen);
+            select(root.getElementsByTagName("*"), null, result, seen);
+        }
+        else if (!isRoot) {
+            for (Element context : contexts) {
+                select(context.getElementsByTagName("*"), context, result, seen);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the first descendant of the given context elements matching the
+     * selector at a given index, or <code>null</code> if there is no such
+     * descendant.
+     * <p>
+     * Descendants are visited in the same order as in
+     * {@link #select(List, boolean)}, but the search stops at the first match.
+     * The selector must be supported.
+     */
+    public Element selectFirst(int index, List<Element> contexts, boolean isRoot) {
+        List<Rule> r = rules.get(index);
+
+        if (r == null) {
+            throw new IllegalArgumentException("Unsupported selector at index " + index);
+        }
+
+        if (isRoot && !contexts.isEmpty()) {
+            Element root = contexts.get(0).getOwnerDocument().getDocumentElement();
+
+            if (matches(r, root, null, true)) {
+                return root;
+            }
+
+            return selectFirst(r, root.getElementsByTagName("*"), null);
+        }
+        else if (!isRoot) {
+            for (Element context : contexts) {
+                Element result = selectFirst(r, context.getElementsByTagName("*"), context);
+
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private Element selectFirst(List<Rule> r, NodeList elements, Element scope) {
+
+        // Don't compute the length of the node list, to avoid visiting all
+        // elements
+        for (int i = 0;; i++) {
+            Element element = (Element) elements.item(i);
+
+            if (element == null) {
+                return null;
+            }
+            else if (matches(r, element, scope, false)) {
+                return element;
+            }
+        }
+    }
+
+    private static boolean matches(List<Rule> r, Element element, Element scope, boolean root) {
+        for (Rule rule : r) {
+            if (!(root && rule.simple) && matches(rule.selectors, rule.selectors.size() - 1, element, scope)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void select(NodeList elements, Element scope, List<List<Element>> result, List<Set<Element>> seen) {
+        final int length = elements.getLength();
+
+        for (int i = 0; i < length; i++) {
+            select((Element) elements.item(i), scope, false, result, seen);
+        }
+    }
+
+    private void select(Element element, Element scope, boolean root, List<List<Element>> result, List<Set<Element>> seen) {
+        select(universal, element, scope, root, result, seen);
+        select(tags.get(element.getTagName()), element, scope, root, result, seen);
+
+        if (!ids.isEmpty()) {
+            Attr id = element.getAttributeNode("id");
+
+            if (id != null) {
+                select(ids.get(id.getValue()), element, scope, root, result, seen);
+            }
+        }
+
+        if (!classes.isEmpty()) {
+            Attr c = element.getAttributeNode("class");
+
+            if (c != null) {
+                for (String token : tokens(c.getValue())) {
+                    select(classes.get(token), element, scope, root, result, seen);
+                }
+            }
+        }
+    }
+
+    private void select(List<Rule> rules, Element element, Element scope, boolean root, List<List<Element>> result, List<Set<Element>> seen) {
+        if (rules != null) {
+            for (Rule rule : rules) {
+
+                // Simple selectors are evaluated using the DOM API, which
+                // doesn't match the document element itself
+                if (root && rule.simple) {
+                    continue;
+                }
+
+                Set<Element> set = seen.get(rule.index);
+
+                if (!set.contains(element) && matches(rule.selectors, rule.selectors.size() - 1, element, scope)) {
+                    result.get(rule.index).add(element);
+                    set.add(element);
+                }
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Compilation
+    // -------------------------------------------------------------------------
+
+    /**
+     * A comma-separated group of a selector
+     */
+    private static class Rule {
+        final int            index;
+        final List<Selector> selectors;
+        final boolean        simple;
+
+        Rule(int index, List<Selector> selectors, boolean simple) {
+            this.index = index;
+            this.selectors = selectors;
+            this.simple = simple;
+        }
+    }
+
+    /**
+     * Compile a selector into its groups, or <code>null</code> if it is not
+     * supported
+     */
+    private static List<Rule> compile(int index, String css) {
+        if (css.indexOf('|') >= 0) {
+            return null;
+        }
+
+        List<List<Selector>> groups = new Scanner(css).scan();
+        List<Rule> result = new ArrayList<Rule>();
+
+        for (List<Selector> group : groups) {
+            for (Selector selector : group) {
+                if (!isSupported(selector)) {
+                    return null;
+                }
+            }
+
+            boolean simple = groups.size() == 1 && group.size() == 1 && !group.get(0).hasSpecifiers();
+            result.add(new Rule(index, group, simple));
+        }
+
+        return result;
+    }
+
+    private static boolean isSupported(Selector selector) {
+
+        // Sibling combinators and negations are not rendered by CSS2XPath.
+        // Matching them here would give different results than find(String)
+        switch (selector.getCombinator()) {
+            case ADJACENT_SIBLING:
+            case GENERAL_SIBLING:
+                return false;
+        }
+
+        if (selector.hasSpecifiers()) {
+            for (Specifier specifier : selector.getSpecifiers()) {
+                switch (specifier.getType()) {
+                    case NEGATION:
+                        return false;
+
+                    case PSEUDO:
+                        if (!(specifier instanceof PseudoClassSpecifier)) {
+                            return false;
+                        }
+
+                        String value = ((PseudoClassSpecifier) specifier).getValue();
+                        if (!"empty".equals(value)
+                            && !"first-child".equals(value)
+                            && !"last-child".equals(value)
+                            && !"only-child".equals(value)
+                            && !"root".equals(value)) {
+                            return false;
+                        }
+
+                        break;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Hash a rule by the most selective part of its rightmost selector
+     */
+    private void index(Rule rule) {
+        Selector selector = rule.selectors.get(rule.selectors.size() - 1);
+
+        if (selector.hasSpecifiers()) {
+            for (Specifier specifier : selector.getSpecifiers()) {
+                if (specifier.getType() == Specifier.Type.ATTRIBUTE) {
+                    AttributeSpecifier a = (AttributeSpecifier) specifier;
+
+                    if (a.getMatch() == AttributeSpecifier.Match.EXACT && "id".equals(a.getName())) {
+                        add(ids, a.getValue(), rule);
+                        return;
+                    }
+                }
+            }
+
+            for (Specifier specifier : selector.getSpecifiers()) {
+                if (specifier.getType() == Specifier.Type.ATTRIBUTE) {
+                    AttributeSpecifier a = (AttributeSpecifier) specifier;
+
+                    if (a.getMatch() == AttributeSpecifier.Match.LIST && "class".equals(a.getName())) {
+                        add(classes, a.getValue(), rule);
+                        return;
+                    }
+                }
+            }
+        }
+
+        if (Selector.UNIVERSAL_TAG.equals(selector.getTagName())) {
+            universal.add(rule);
+        }
+        else {
+            add(tags, selector.getTagName(), rule);
+        }
+    }
+
+    private static void add(Map<String, List<Rule>> map, String key, Rule rule) {
+        List<Rule> rules = map.get(key);
+
+        if (rules == null) {
+            rules = new ArrayList<Rule>();
+            map.put(key, rules);
+        }
+
+        rules.add(rule);
+    }
+
+    // -------------------------------------------------------------------------
+    // Matching
+    // -------------------------------------------------------------------------
+
+    /**
+     * Check whether an element matches the selector at a given index, and its
+     * preceding selectors within the scope
+     */
+    private static boolean matches(List<Selector> selectors, int index, Element element, Element scope) {
+        Selector selector = selectors.get(index);
+
+        if (!matches(selector, element)) {
+            return false;
+        }
+        else if (index == 0) {
+            return true;
+        }
+
+        switch (selector.getCombinator()) {
+            case CHILD: {
+                Element parent = parent(element, scope);
+                return parent != null && matches(selectors, index - 1, parent, scope);
+            }
+
+            case DESCENDANT: {
+                for (Element e = parent(element, scope); e != null; e = parent(e, scope)) {
+                    if (matches(selectors, index - 1, e, scope)) {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether an element matches a single compound selector
+     */
+    private static boolean matches(Selector selector, Element element) {
+        String tagName = selector.getTagName();
+
+        if (!Selector.UNIVERSAL_TAG.equals(tagName) && !tagName.equals(element.getTagName())) {
+            return false;
+        }
+
+        if (selector.hasSpecifiers()) {
+            for (Specifier specifier : selector.getSpecifiers()) {
+                switch (specifier.getType()) {
+                    case ATTRIBUTE:
+                        if (!matches((AttributeSpecifier) specifier, element)) {
+                            return false;
+                        }
+
+                        break;
+
+                    case PSEUDO:
+                        if (!matches((PseudoClassSpecifier) specifier, element)) {
+                            return false;
+                        }
+
+                        break;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean matches(AttributeSpecifier specifier, Element element) {
+        Attr attr = element.getAttributeNode(specifier.getName());
+
+        if (attr == null) {
+            return false;
+        }
+        else if (specifier.getMatch() == null) {
+            return true;
+        }
+
+        String value = attr.getValue();
+        String expected = specifier.getValue();
+
+        switch (specifier.getMatch()) {
+            case EXACT:
+                return value.equals(expected);
+            case LIST:
+                return tokens(value).contains(expected);
+            case HYPHEN:
+                return value.equals(expected) || value.startsWith(expected + "-");
+            case PREFIX:
+                return value.startsWith(expected);
+            case SUFFIX:
+                return value.endsWith(expected);
+            case CONTAINS:
+                return value.contains(expected);
+        }
+
+        return false;
+    }
+
+    private static boolean matches(PseudoClassSpecifier specifier, Element element) {
+        String value = specifier.getValue();
+
+        if ("empty".equals(value)) {
+            return !element.hasChildNodes() && !element.hasAttributes();
+        }
+        else if ("first-child".equals(value)) {
+            return previous(element) == null;
+        }
+        else if ("last-child".equals(value)) {
+            return next(element) == null;
+        }
+        else if ("only-child".equals(value)) {
+            return previous(element) == null && next(element) == null;
+        }
+        else if ("root".equals(value)) {
+            return element.getParentNode() == null || element.getParentNode().getNodeType() != Node.ELEMENT_NODE;
+        }
+
+        return false;
+    }
+
+    // -------------------------------------------------------------------------
+    // Utilities
+    // -------------------------------------------------------------------------
+
+    /**
+     * The parent element of an element, if it lies within the scope
+     */
+    private static Element parent(Element element, Element scope) {
+        Node parent = element.getParentNode();
+
+        if (parent == scope || parent == null || parent.getNodeType() != Node.ELEMENT_NODE) {
+            return null;
+        }
+
+        return (Element) parent;
+    }
+
+    private static Element previous(Element element) {
+        for (Node node = element.getPreviousSibling(); node != null; node = node.getPreviousSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element) node;
+            }
+        }
+
+        return null;
+    }
+
+    private static Element next(Element element) {
+        for (Node node = element.getNextSibling(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element) node;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Split a whitespace-separated list of values
+     */
+    private static List<String> tokens(String value) {
+        List<String> result = new ArrayList<String>();
+        int start = -1;
+
+        for (int i = 0; i <= value.length(); i++) {
+            if (i == value.length() || Character.isWhitespace(value.charAt(i))) {
+                if (start >= 0) {
+                    result.add(value.substring(start, i));
+                    start = -1;
+                }
+            }
+            else if (start < 0) {
+                start = i;
+            }
+        }
+
+        return result;
+    }
+}
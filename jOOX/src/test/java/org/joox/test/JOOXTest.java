@@ -46,39 +46,66 @@ import static junit.framework.Assert.fail;
 import static org.joox.JOOX.$;
 import static org.joox.JOOX.attr;
 import static org.joox.JOOX.paths;
+import static org.joox.JOOX.tree;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.xml.datatype.DatatypeFactory;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.io.IOUtil;
+import org.joox.Batch;
 import org.joox.Content;
 import org.joox.Context;
+import org.joox.Converter;
+import org.joox.Cursor;
 import org.joox.Each;
+import org.joox.FastFilter;
 import org.joox.Filter;
 import org.joox.JOOX;
 import org.joox.Mapper;
 import org.joox.Match;
+import org.joox.SelectorSet;
+import org.joox.Tree;
 import org.junit.Before;
 import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 
 
 /**
@@ -210,6 +237,14 @@ public class JOOXTest {
         assertEquals("O Alquimista", $.find("books").children(1, 2).children("name").text(1));
         assertEquals("O Alquimista", $.find("books").children(1, 2).children("name").text(2));
         assertEquals("Animal Farm", $.find("books").children(1, 2).children("name").text(3));
+
+        // Positions are unordered sets, and out of range positions are ignored
+        assertEquals($.find("books").children(1, 2), $.find("books").children(2, 1, 2, -1, 7));
+        assertEquals($.find("books").children(1, 2), $.find("books").children(JOOX.and(JOOX.at(1, 2), JOOX.all())));
+        assertEquals(0, $.find("books").children().size() - $.find("books").children(0, 1, 2, 3).size());
+        assertEquals(0, $.find("books").children(new int[0]).size());
+        assertEquals(0, $.find("books").child(4).size());
+        assertEquals(2, $.find("books").filter(JOOX.at(0, 2)).size());
     }
 
     @Test
@@ -628,6 +663,67 @@ public class JOOXTest {
             $.find("library").find("dvd:only-child"));
     }
 
+    @Test
+    public void testFindNamespaces() throws Exception {
+        String xml =
+            "<s:Envelope xmlns:s='urn:soap' xmlns='urn:atom'>" +
+              "<s:Body>" +
+                "<feed><entry id='1'/><entry id='2'><s:entry id='3'/></entry></feed>" +
+                "<entry xmlns='' id='4'/>" +
+              "</s:Body>" +
+            "</s:Envelope>";
+
+        Match m = $(JOOX.builder(true).parse(new ByteArrayInputStream(xml.getBytes())))
+            .namespace("soap", "urn:soap")
+            .namespace("a", "urn:atom");
+
+        // Simple namespaced selectors
+        assertEquals(1, m.find("soap|Body").size());
+        assertEquals(0, m.find("a|Body").size());
+        assertEquals(2, m.find("a|entry").size());
+        assertEquals(asList("1", "2"), m.find("a|entry").ids());
+        assertEquals(asList("3"), m.find("soap|entry").ids());
+        assertEquals(asList("4"), m.find("|entry").ids());
+        assertEquals(asList("1", "2", "3", "4"), m.find("*|entry").ids());
+        assertEquals(2, m.find("soap|*").size());
+        assertEquals(3, m.find("entry").size());
+
+        // Bound prefixes are inherited by derived matches
+        assertEquals(asList("1", "2"), m.find("a|feed").children("a|entry").ids());
+        assertEquals(asList("4"), m.find("soap|Body").children().filter("|entry").ids());
+        assertTrue(m.find("a|feed").is("a|feed"));
+        assertFalse(m.find("a|feed").is("soap|feed"));
+
+        // Namespaced CSS selectors
+        assertEquals(asList("1", "2"), m.find("soap|Body a|feed > a|entry").ids());
+        assertEquals(asList("3"), m.find("a|entry > soap|entry[id]").ids());
+        assertEquals(asList("2"), m.find("*|entry[id='2']").ids());
+        assertEquals(asList("4"), m.find("soap|Body > |entry").ids());
+        assertEquals(asList("1"), m.find("a|entry[id|='1']").ids());
+
+        // XPath with bound prefixes
+        assertEquals(asList("1", "2"), m.xpath("//soap:Body/a:feed/a:entry").ids());
+        assertEquals(asList("2"), m.xpath("//a:entry[@id = $1]", 2).ids());
+
+        try {
+            m.find("x|entry");
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+
+        try {
+            m.find("x|feed > a|entry");
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+
+        try {
+            $(m.document()).find("x|feed > entry");
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+    }
+
     @Test
     public void testFindFilter() throws Exception {
         assertEquals(0, $.find(JOOX.none()).size());
@@ -639,6 +735,110 @@ public class JOOXTest {
         assertEquals(8, $.find(JOOX.tag("book")).size());
     }
 
+    @Test
+    public void testFindAll() throws Exception {
+        String[] selectors = {
+            "book", "*", "document", "#1", "#1, #2", "book#1", "book[id='3']",
+            "library book", "books > book", "books > * > * > author", "document > library",
+            "library > * > book, library > dvds > dvd", "name, author", "*[name~=Orell]",
+            "library[name^=Ama]", "library[name$=zon]", "library[name*=mazo]",
+            ":root", ":root > library", ":empty", ":first-child", "book:last-child",
+            "dvd:only-child", "|entry", "book book", "asdf"
+        };
+
+        SelectorSet set = JOOX.selectors(selectors);
+        assertEquals(selectors.length, set.size());
+
+        for (Match context : asList($, $.find("library"), $.find("books").eq(1, 2))) {
+            Map<String, Match> result = context.findAll(set);
+            assertEquals(asList(selectors), new ArrayList<String>(result.keySet()));
+
+            for (String selector : selectors) {
+                assertEquals(selector, context.find(selector), result.get(selector));
+            }
+        }
+
+        Match match = $("<a><b class='x y'/><c class='y' id='z'/><b/></a>");
+        Map<String, Match> result = match.findAll(".y", "b.x", "c#z");
+        assertEquals(asList("b", "c"), result.get(".y").tags());
+        assertEquals(match.find(".y"), result.get(".y"));
+        assertEquals(1, result.get("b.x").size());
+        assertEquals(1, result.get("c#z").size());
+
+        // Sibling combinators and negations agree with find(String)
+        match = $("<r><ul><li/><li/></ul><p/><p/><div class='y'/></r>");
+        for (String selector : asList("li + li", "p ~ p", "ul li + li", "b + c", "b ~ b")) {
+            assertEquals(selector, match.find(selector), match.findAll(selector).get(selector));
+        }
+
+        try {
+            match.find("div:not(.x)");
+            fail();
+        }
+        catch (RuntimeException expected) {}
+
+        try {
+            match.findAll("div:not(.x)");
+            fail();
+        }
+        catch (RuntimeException expected) {}
+
+        // Nested contexts must not produce duplicate elements
+        match = $("<r><a><b id='1'><b id='2'/></b><b/></a></r>").find("a");
+        Match nested = match.add(match.find("b").eq(0));
+        result = nested.findAll("b[id]", "b", "*");
+        assertEquals(asList("1", "2"), result.get("b[id]").ids());
+        assertEquals(3, result.get("b").size());
+        assertEquals(3, result.get("*").size());
+
+        try {
+            JOOX.selectors("b", "b");
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+    }
+
+    @Test
+    public void testFindFirst() throws Exception {
+        assertEquals($.find("book").eq(0), $.findFirst("book"));
+        assertEquals($.child(), $.findFirst());
+        assertEquals(0, $.findFirst("asdf").size());
+        assertEquals(asList("1", "1", "1"), $.find("library").findFirst("book").ids());
+        assertEquals(asList("1", "1", "1"), $.find("library").findFirst("books > book").ids());
+        assertEquals(asList("2", "3", "2"), $.find("library").findFirst("book[id='3'], book[id='2']").ids());
+        assertEquals(asList("5"), $.find("library").findFirst("dvd").ids());
+        assertEquals(asList("George Orwell", "George Orwell", "George Orwell"),
+            $.find("library").findFirst(JOOX.tag("author")).texts());
+        assertEquals($.find("library").eq(0), $.findFirst(":root > library"));
+        assertEquals($, $.findFirst(":root"));
+
+        // findFirst(String) agrees with find(String) for every context element
+        Match lists = $("<r><ul><li/><li/></ul><ul><li/><li/><li/></ul><p/><p/><div/></r>");
+        for (String selector : asList("li + li", "p ~ p", "ul li + li", "li:first-child", "ul > li")) {
+            for (Match context : asList(lists, lists.find("ul"))) {
+                List<Element> expected = new ArrayList<Element>();
+
+                for (Element element : context) {
+                    expected.addAll($(element).find(selector).eq(0).get());
+                }
+
+                assertEquals(selector, expected, context.findFirst(selector).get());
+            }
+        }
+
+        try {
+            lists.findFirst("div:not(.x)");
+            fail();
+        }
+        catch (RuntimeException expected) {}
+
+        assertEquals(3, $.find("author").closest("library").size());
+        assertEquals($.find("library"), $.find("library").closest("library"));
+        assertEquals($.find("book").eq(0), $.find("author").eq(0).closest(JOOX.attr("id")));
+        assertEquals(0, $.find("author").closest("dvds").size());
+        assertEquals(3, $.find("library").child("books").size());
+    }
+
     @Test
     public void testMatchXPath() throws Exception {
         assertEquals(totalElements + 1, $.xpath("//*").size());
@@ -711,6 +911,128 @@ public class JOOXTest {
         assertFalse($.find("name").eq(1).text(boolean.class));
     }
 
+    @Test
+    public void testConvertPrimitives() throws Exception {
+        assertEquals(
+            asList(1, 2, 3, 4, 1, 3, 1, 2),
+            asList(toObject($.find("book").ints("id"))));
+        assertEquals(
+            asList(1L, 2L, 3L, 4L, 1L, 3L, 1L, 2L),
+            asList(toObject($.find("book").longs("id"))));
+        assertEquals(
+            asList(1.0, 2.0, 3.0, 4.0, 1.0, 3.0, 1.0, 2.0),
+            asList(toObject($.find("book").doubles("id"))));
+        assertEquals(0, $.find("abc").ints("id").length);
+
+        // Non-ASCII digits are parsed like ASCII digits
+        String arabic = "\u0661\u0662";
+        assertEquals(12, (int) JOOX.convert(arabic, int.class));
+        assertEquals(12, (int) JOOX.convert(arabic, Integer.class));
+        assertEquals(12L, (long) JOOX.convert(arabic, long.class));
+        assertEquals(asList(12), $("a", $("b", arabic)).find("b").texts(int.class));
+        assertEquals(12, $("a", $("b", arabic)).find("b").ints()[0]);
+
+        // Missing attributes and illegal values result in 0
+        assertEquals(asList(0), asList(toObject($.ints("id"))));
+        assertEquals(
+            $.find("name").texts(int.class),
+            asList(toObject($.find("name").ints())));
+        assertEquals(
+            $.find("name").texts(long.class),
+            asList(toObject($.find("name").longs())));
+        assertEquals(
+            $.find("name").texts(double.class),
+            asList(toObject($.find("name").doubles())));
+
+        Match m = $("root",
+            $("value", "-12"),
+            $("value", "+7"),
+            $("value", "7.8"),
+            $("value", "1e3"),
+            $("value", "123456789012345678901"),
+            $("value", "-"),
+            $("value", ""));
+
+        assertEquals(m.find("value").texts(int.class), asList(toObject(m.find("value").ints())));
+        assertEquals(m.find("value").texts(long.class), asList(toObject(m.find("value").longs())));
+        assertEquals(m.find("value").texts(double.class), asList(toObject(m.find("value").doubles())));
+    }
+
+    private static Integer[] toObject(int[] array) {
+        Integer[] result = new Integer[array.length];
+        for (int i = 0; i < array.length; i++) {
+            result[i] = array[i];
+        }
+
+        return result;
+    }
+
+    private static Long[] toObject(long[] array) {
+        Long[] result = new Long[array.length];
+        for (int i = 0; i < array.length; i++) {
+            result[i] = array[i];
+        }
+
+        return result;
+    }
+
+    private static Double[] toObject(double[] array) {
+        Double[] result = new Double[array.length];
+        for (int i = 0; i < array.length; i++) {
+            result[i] = array[i];
+        }
+
+        return result;
+    }
+
+    @Test
+    public void testConvertCustom() throws Exception {
+        assertNull($.find("book").attr("id", Locale.class));
+
+        JOOX.register(Locale.class, new Converter<Locale>() {
+            @Override
+            public Locale convert(String value) {
+                return value == null ? null : new Locale(value);
+            }
+        });
+
+        try {
+            assertEquals(new Locale("1"), $.find("book").attr("id", Locale.class));
+            assertEquals(
+                asList(new Locale("1"), new Locale("2")),
+                $.find("book").slice(0, 2).ids(Locale.class));
+            assertEquals(
+                asList(new Locale("de"), new Locale("fr")),
+                asList($("<locales>de fr</locales>").text(Locale[].class)));
+            assertEquals(new Locale("x"), JOOX.converter(Locale.class).convert("x"));
+        }
+        finally {
+            JOOX.register(Locale.class, null);
+        }
+    }
+
+    @Test
+    public void testConvertCustomPrimitiveArrays() throws Exception {
+        assertTrue(Arrays.equals(new int[] { 1, 2 }, JOOX.convert("1 2", int[].class)));
+
+        JOOX.register(int.class, new Converter<Integer>() {
+            @Override
+            public Integer convert(String value) {
+                return value.length();
+            }
+        });
+
+        try {
+            assertTrue(Arrays.equals(new int[] { 1, 2 }, JOOX.convert("a bb", int[].class)));
+            assertTrue(Arrays.equals(new long[] { 1, 2 }, JOOX.convert("1 2", long[].class)));
+        }
+        finally {
+            JOOX.register(int.class, null);
+        }
+
+        assertTrue(Arrays.equals(new int[] { 1, 2 }, JOOX.convert("1 2", int[].class)));
+    }
+
     @Test
     public void testConvertArrays() throws Exception {
 
@@ -763,6 +1085,44 @@ public class JOOXTest {
             asList(m.attr("class", String[].class)));
     }
 
+    @Test
+    public void testConvertPrimitiveArrays() throws Exception {
+        String[] values = {
+            "",
+            "1,2,3 4;5;6 \"7.8\" \"9.0\";11",
+            " 1 , 2 ,, -3; +4;",
+            "0 -0 00012 123456789012345678 1234567890123456789012 9e20 1.5e2 abc",
+            "0.1 -2.5e3 1e-5 .5 5. 3.141592653589793 1234567890.12345678 1e-300 1.7976931348623157E308 4.9e-324 NaN 1e1x",
+            "\t0.3\n0.30000000000000004\r1E22 1e23 -1e-22 -1e-23 7d"
+        };
+
+        for (String value : values) {
+            Match m = $("<root>" + value + "</root>");
+
+            int[] ints = m.text(int[].class);
+            Integer[] integers = m.text(Integer[].class);
+            assertEquals(value, integers.length, ints.length);
+            for (int i = 0; i < ints.length; i++) {
+                assertEquals(value, integers[i] == null ? 0 : integers[i].intValue(), ints[i]);
+            }
+
+            long[] longs = m.text(long[].class);
+            Long[] longObjects = m.text(Long[].class);
+            assertEquals(value, longObjects.length, longs.length);
+            for (int i = 0; i < longs.length; i++) {
+                assertEquals(value, longObjects[i] == null ? 0L : longObjects[i].longValue(), longs[i]);
+            }
+
+            double[] doubles = m.text(double[].class);
+            String[] strings = m.text(String[].class);
+            assertEquals(value, strings.length, doubles.length);
+            for (int i = 0; i < doubles.length; i++) {
+                double expected = JOOX.convert(strings[i], double.class);
+                assertEquals(strings[i], Double.doubleToLongBits(expected), Double.doubleToLongBits(doubles[i]));
+            }
+        }
+    }
+
     @Test
     public void testEquals() throws Exception {
         assertEquals($, $);
@@ -1105,6 +1465,40 @@ public class JOOXTest {
 
         assertEquals(0, $.filter(JOOX.not(JOOX.all())).size());
         assertEquals(1, $.filter(JOOX.not(JOOX.none())).size());
+
+        // Constant filters are folded and fast filters stay fast
+        Filter book = JOOX.tag("book");
+        Filter slow = new Filter() {
+            @Override
+            public boolean filter(Context context) {
+                return context.elementIndex() < context.elementSize() / 2;
+            }
+        };
+
+        assertTrue(JOOX.and(JOOX.all(), book) == book);
+        assertTrue(JOOX.or(JOOX.none(), book, JOOX.none()) == book);
+        assertTrue(JOOX.or(book, JOOX.all()) == JOOX.all());
+        assertTrue(JOOX.and(book, JOOX.or(JOOX.none())) == JOOX.none());
+        assertTrue(JOOX.not(JOOX.not(slow)) == slow);
+        assertTrue(JOOX.and(book, JOOX.not(JOOX.attr("id"))) instanceof FastFilter);
+        assertFalse(JOOX.and(book, slow) instanceof FastFilter);
+        assertEquals(JOOX.and(book, JOOX.and(JOOX.attr("id"), JOOX.leaf())).toString().split(",").length, 3);
+
+        // Reordering filters doesn't change the result
+        StringBuilder sb = new StringBuilder("<a>");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i % 3 == 0 ? "<b id='" + i + "'/>" : "<c/>");
+        }
+
+        Match match = $(sb.append("</a>").toString());
+        Filter and = JOOX.and(slow, JOOX.or(JOOX.tag("b"), JOOX.attr("x")), JOOX.attr("id"));
+        Filter or = JOOX.or(slow, JOOX.tag("b"));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(334, match.find(and).size());
+            assertEquals(1333, match.find(or).size());
+            assertEquals(667, match.find(JOOX.not(or)).size());
+        }
     }
 
     @Test
@@ -1154,6 +1548,32 @@ public class JOOXTest {
         assertEquals(
             $.find("book[id='1'], book[id='2']"),
             $.find().filter(attr("id", "1", "2")));
+
+        // Large value sets are hashed
+        String[] values = new String[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "" + (i + 2);
+        }
+
+        assertEquals(6, $.find().filter(attr("id", values)).size());
+        assertEquals(
+            $.find().filter(JOOX.not(attr("id", "1"))).filter(attr("id")),
+            $.find().filter(attr("id", values)));
+
+        assertEquals(1, $.find().filter(JOOX.attrPrefix("name", "Ama")).size());
+        assertEquals(1, $.find().filter(JOOX.attrPrefix("name", "R")).size());
+        assertEquals(1, $.find().filter(JOOX.attrSuffix("name", "zon")).size());
+        assertEquals(9, $.find().filter(JOOX.attrPrefix("id", "")).size());
+        assertEquals(0, $.find().filter(JOOX.attrSuffix("any", "")).size());
+
+        assertEquals(5, $.find().filter(JOOX.attrRange("id", 2, 4)).size());
+        assertEquals(3, $.find().filter(JOOX.attrRange("id", null, 1.5)).size());
+        assertEquals(1, $.find().filter(JOOX.attrRange("id", 5, null)).size());
+        assertEquals(0, $.find().filter(JOOX.attrRange("name", null, null)).size());
+
+        Match numbers = $("<a><b v='3f'/><b v='0x1p1'/><b v='Infinity'/><b v='1-2'/><b v=' 3 '/><b v='-0.5e1'/></a>");
+        assertEquals(asList(" 3 "), numbers.find().filter(JOOX.attrRange("v", 0, null)).attrs("v"));
+        assertEquals(asList("-0.5e1"), numbers.find().filter(JOOX.attrRange("v", null, 0)).attrs("v"));
     }
 
     @Test
@@ -1179,6 +1599,13 @@ public class JOOXTest {
         assertEquals(0, $.find("director").size());
         assertEquals(3, $.find("book").remove(JOOX.ids("1", "2")).size());
         assertEquals(3, $.find("book").remove(JOOX.ids("1", "2")).size());
+        assertEquals(asList("3", "4", "3"), $.find("book").ids());
+
+        // Elements may be matched several times
+        Match names = $.find("library").add($.find("books")).find("name");
+        assertEquals(7, names.size());
+        assertEquals(asList("Brida", "Brida"), names.remove(JOOX.matchText("O.*")).texts());
+        assertEquals(asList("Brida"), $.find("name").texts());
         assertEquals(0, $.remove().size());
         assertEquals(0, $.find().size());
         assertEquals(0, $.size());
@@ -1329,6 +1756,111 @@ public class JOOXTest {
             asList(1, 2, 3, 4, 1, 3, 1, 2),
             $.find("library").transform(JOOXTest.class.getResource("/book-id-decrement.xsl")).find("book").ids(Integer.class));
         assertEquals($(xmlExampleString).toString(), $.toString());
+
+        // Invalid replacements of the document element leave the document intact
+        String xsl = "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+                   + "<xsl:template match='/'>%s</xsl:template></xsl:stylesheet>";
+
+        for (String output : asList("<x/><y/>", "text")) {
+            Match r = $("<r><a/></r>");
+
+            try {
+                r.transform(new StreamSource(new StringReader(String.format(xsl, output))));
+                fail();
+            }
+            catch (RuntimeException expected) {
+                assertTrue(expected.getCause() instanceof DOMException);
+            }
+
+            assertEquals("<r><a/></r>", r.toString());
+        }
+
+        // Elements can be replaced by several nodes
+        Match r = $("<r><a/></r>");
+        assertEquals(asList("x", "y"), r.find("a").transform(new StreamSource(new StringReader(String.format(xsl, "<x/>t<y/>")))).tags());
+        assertEquals("<r><x/>t<y/></r>", r.toString());
+    }
+
+    @Test
+    public void testTransformTemplates() throws Exception {
+        Templates increment = TransformerFactory.newInstance().newTemplates(
+            new StreamSource(JOOXTest.class.getResourceAsStream("/book-id-increment.xsl")));
+        Templates decrement = TransformerFactory.newInstance().newTemplates(
+            new StreamSource(JOOXTest.class.getResourceAsStream("/book-id-decrement.xsl")));
+
+        assertEquals(
+            asList(2, 3, 4, 5, 2, 4, 2, 3),
+            $.find("book").transform(increment).ids(Integer.class));
+        assertEquals(
+            asList(3, 4, 5, 6, 3, 5, 3, 4),
+            $.find("book").transform(increment).ids(Integer.class));
+        assertEquals(
+            asList(2, 3, 4, 5, 2, 4, 2, 3),
+            $.find("book").transform(decrement).ids(Integer.class));
+
+        // Cached stylesheets are applied repeatedly
+        File file = new File(JOOXTest.class.getResource("/book-id-decrement.xsl").toURI());
+        for (int i = 0; i < 3; i++) {
+            $.find("book").transform(file);
+        }
+
+        assertEquals(
+            asList(-1, 0, 1, 2, -1, 1, -1, 0),
+            $.find("book").ids(Integer.class));
+
+        // Relative includes are resolved against the system ID of streams
+        File dir = File.createTempFile("joox", "");
+        dir.delete();
+        dir.mkdir();
+        dir.deleteOnExit();
+
+        File include = new File(dir, "include.xsl");
+        File main = new File(dir, "main.xsl");
+        include.deleteOnExit();
+        main.deleteOnExit();
+
+        $("xsl:stylesheet", $("xsl:template", $("x")).attr("match", "/"))
+            .attr("version", "1.0")
+            .attr("xmlns:xsl", "http://www.w3.org/1999/XSL/Transform")
+            .write(include);
+        $("xsl:stylesheet", $("xsl:include").attr("href", "include.xsl"))
+            .attr("version", "1.0")
+            .attr("xmlns:xsl", "http://www.w3.org/1999/XSL/Transform")
+            .write(main);
+
+        String systemId = main.toURI().toString();
+        assertEquals("x", $("<a/>").transform(new StreamSource(new FileInputStream(main), systemId)).tag());
+        assertEquals("x", $("<a/>").transform(new StreamSource(new StringReader($(main).toString()), systemId)).tag());
+
+        // Stylesheets with includes are not cached, as changes of their
+        // included stylesheets cannot be detected
+        assertEquals("x", $("<a/>").transform(main).tag());
+        $("xsl:stylesheet", $("xsl:template", $("y")).attr("match", "/"))
+            .attr("version", "1.0")
+            .attr("xmlns:xsl", "http://www.w3.org/1999/XSL/Transform")
+            .write(include);
+        assertEquals("y", $("<a/>").transform(main).tag());
+        assertEquals("y", $("<a/>").transform(new StreamSource(new FileInputStream(main), systemId)).tag());
+    }
+
+    @Test
+    public void testTransformStreaming() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        JOOX.transform(
+            new StreamSource(JOOXTest.class.getResourceAsStream("/book-id-increment.xsl")),
+            new StreamSource(JOOXTest.class.getResourceAsStream("/example.xml")),
+            new StreamResult(writer));
+
+        assertEquals(
+            asList(2, 3, 4, 5, 2, 4, 2, 3),
+            $(new StringReader(writer.toString())).find("book").ids(Integer.class));
+
+        // Transform the document element in place
+        assertEquals(
+            asList(2, 3, 4, 5, 2, 4, 2, 3),
+            $.transform(JOOXTest.class.getResource("/book-id-increment.xsl")).find("book").ids(Integer.class));
+        assertEquals("document", $(xmlExampleDocument).tag());
     }
 
     @Test
@@ -1467,6 +1999,15 @@ public class JOOXTest {
         assertEquals(1, $.find("book").eq(0).children("authors").children("author").size());
         assertEquals("Dan Brown", $.find("book").eq(0).children("authors").children("author").text());
         assertEquals(Arrays.asList("5", "1", "2", "3", "4"), $.find("books").eq(0).children("book").ids());
+
+        // Prepend several books to several elements
+        // -----------------------------------------
+        Element book6 = xmlExampleDocument.createElement("book");
+        book6.setAttribute("id", "6");
+        assertEquals(3, $.find("books").prepend(book6, $("book").attr("id", "7").get(0)).size());
+        assertEquals(Arrays.asList("6", "7", "5", "1", "2", "3", "4"), $.find("books").eq(0).children("book").ids());
+        assertEquals(Arrays.asList("6", "7", "1", "3"), $.find("books").eq(1).children("book").ids());
+        assertTrue(book6 == $.find("book").get(0));
     }
 
     @Test
@@ -1548,6 +2089,417 @@ public class JOOXTest {
         assertEquals(Arrays.asList(null, "5"), x.children().ids());
     }
 
+    @Test
+    public void testCompact() throws Exception {
+        Match c = $(JOOX.compact(new StringReader(xmlExampleString)));
+
+        // Traversal and content
+        assertEquals($.find().size(), c.find().size());
+        assertEquals($.find().tags(), c.find().tags());
+        assertEquals($.find("book").ids(), c.find("book").ids());
+        assertEquals($.find("book").xpaths(), c.find("book").xpaths());
+        assertEquals($.find("library").attrs("name"), c.find("library").attrs("name"));
+        assertEquals($.find("author").texts(), c.find("author").texts());
+        assertEquals($.find("book").eq(3).children().tags(), c.find("book").eq(3).children().tags());
+        assertEquals($.find("book").eq(3).parents().tags(), c.find("book").eq(3).parents().tags());
+        assertEquals($.find("book").eq(3).prevAll().ids(), c.find("book").eq(3).prevAll().ids());
+        assertEquals($.find("book").eq(3).nextAll().ids(), c.find("book").eq(3).nextAll().ids());
+        assertEquals($.find("books").eq(0).text(), c.find("books").eq(0).text());
+        assertEquals($.find("book").ids(Integer.class), c.find("book").ids(Integer.class));
+
+        // Selectors and XPath
+        assertEquals($.find("library > books > book[id]").ids(), c.find("library > books > book[id]").ids());
+        assertEquals($.find("book:first-child").ids(), c.find("book:first-child").ids());
+        assertEquals($.xpath("//book[@id > 2]/name").texts(), c.xpath("//book[@id > 2]/name").texts());
+        assertEquals($.xpath("//library[@name = $1]//book", "Amazon").ids(), c.xpath("//library[@name = $1]//book", "Amazon").ids());
+        assertEquals($.find("library").xpath("self::*[count(.//book) > 3]").size(), c.find("library").xpath("self::*[count(.//book) > 3]").size());
+
+        // Serialisation
+        assertEquals($.toString(), c.toString());
+        assertEquals($.find("book").eq(0).toString(), c.find("book").eq(0).toString());
+
+        // Content can be copied into mutable documents
+        assertEquals(
+            $.find("book").eq(0).toString(),
+            $("copy").append(c.find("book").eq(0)).children().toString());
+
+        // Namespace-aware compact documents
+        String xml = "<a:x xmlns:a='urn:a'><a:y id='1'/><y id='2'/><z xmlns='urn:a' id='3'/></a:x>";
+        Match n = $(JOOX.compact(new InputSource(new StringReader(xml)), true)).namespace("b", "urn:a");
+        assertEquals(asList("1", "3"), n.find("b|*").ids());
+        assertEquals(asList("1", "3"), n.xpath(".//b:*").ids());
+        assertEquals(asList("2"), n.find("|y").ids());
+        assertEquals("urn:a", n.find("z").get(0).lookupNamespaceURI(null));
+        assertEquals("a", n.find("y").get(0).lookupPrefix("urn:a"));
+
+        // Compact documents are read-only
+        try {
+            c.find("book").attr("id", "x");
+            fail();
+        }
+        catch (DOMException expected) {}
+
+        try {
+            c.find("book").remove();
+            fail();
+        }
+        catch (DOMException expected) {}
+
+        // Names are shared by all compact documents
+        Match d = $(JOOX.compact(new StringReader(xmlExampleString)));
+        assertTrue(c.find("book").get(0).getTagName() == d.find("book").get(0).getTagName());
+        assertTrue(c.find("book").get(0).getTagName() == "book");
+        assertEquals(c.find("book").size(), c.find(JOOX.tag(new String("book"))).size());
+
+        // Node identity is preserved as long as nodes are referenced
+        Element book = c.find("book").get(0);
+        Attr id = book.getAttributeNode("id");
+        System.gc();
+        assertTrue(book == c.find("book").get(0));
+        assertTrue(id == c.find("book").get(0).getAttributeNode("id"));
+    }
+
+    @Test
+    public void testCompactStore() throws Exception {
+        File file = File.createTempFile("joox", ".bin");
+        file.deleteOnExit();
+
+        JOOX.store(JOOX.compact(new StringReader(xmlExampleString)), file);
+
+        // Memory-mapped documents
+        Match mapped = $(JOOX.map(file));
+        assertEquals($.find().tags(), mapped.find().tags());
+        assertEquals($.find("book").ids(), mapped.find("book").ids());
+        assertEquals($.find("author").texts(), mapped.find("author").texts());
+        assertEquals($.xpath("//book[@id > 2]/name").texts(), mapped.xpath("//book[@id > 2]/name").texts());
+        assertEquals($.toString(), mapped.toString());
+
+        // Documents in direct buffers
+        FileInputStream in = new FileInputStream(file);
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) file.length());
+        while (buffer.hasRemaining()) {
+            in.getChannel().read(buffer);
+        }
+
+        buffer.flip();
+        in.close();
+
+        Match direct = $(JOOX.map(buffer));
+        assertEquals($.find("library > books > book[id]").ids(), direct.find("library > books > book[id]").ids());
+        assertEquals($.toString(), direct.toString());
+
+        try {
+            JOOX.map(ByteBuffer.wrap(xmlExampleString.getBytes()));
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+
+        // Truncated and corrupt documents are rejected
+        byte[] bytes = new byte[(int) file.length()];
+        buffer.rewind();
+        buffer.get(bytes);
+
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                JOOX.map(ByteBuffer.wrap(bytes, 0, length));
+                fail();
+            }
+            catch (IllegalArgumentException expected) {}
+        }
+
+        ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone());
+        corrupt.putInt(16, Integer.MAX_VALUE);
+
+        try {
+            JOOX.map(corrupt);
+            fail();
+        }
+        catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().startsWith("Corrupt compact document"));
+        }
+
+        corrupt = ByteBuffer.wrap(bytes.clone());
+        corrupt.putInt(24 + corrupt.getInt(8) * 4 + corrupt.getInt(12) * 4 + corrupt.getInt(16) * 2, Integer.MAX_VALUE);
+
+        try {
+            JOOX.map(corrupt);
+            fail();
+        }
+        catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().startsWith("Corrupt compact document"));
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        $.find("book").snapshot(stream);
+
+        Match snapshot = $(JOOX.snapshot(new ByteArrayInputStream(stream.toByteArray())));
+        assertEquals($.find().tags(), snapshot.find().tags());
+        assertEquals($.find("book").ids(), snapshot.find("book").ids());
+        assertEquals($.xpath("//book[@id > 2]/name").texts(), snapshot.xpath("//book[@id > 2]/name").texts());
+        assertEquals($.toString(), snapshot.toString());
+
+        // Snapshots of compact documents
+        stream = new ByteArrayOutputStream();
+        snapshot.snapshot(stream);
+        assertEquals($.toString(), $(JOOX.snapshot(new ByteArrayInputStream(stream.toByteArray()))).toString());
+
+        // Namespace-aware documents
+        String xml = "<a xmlns='http://a' xmlns:b='http://b'><b:c x='1'/><![CDATA[<d>]]><!-- e --><?f g?></a>";
+        Document document = JOOX.builder(true).parse(new ByteArrayInputStream(xml.getBytes()));
+        Document compact = JOOX.compact(document);
+        assertEquals("1", $(compact).namespace("b", "http://b").find("b|c").attr("x"));
+        assertEquals($(document).toString(), $(compact).toString());
+        assertEquals(compact, JOOX.compact(compact));
+    }
+
+    @Test
+    public void testLive() throws Exception {
+        Match live = $.live();
+        assertEquals(8, live.find("book").size());
+        assertEquals(totalElements, live.find("*").size());
+        assertEquals(asList("1", "2", "3", "4"), live.find("library").eq(0).find("book").ids());
+
+        // Attribute changes
+        $.find("book").eq(0).attr("id", "x");
+        assertEquals("x", live.find("book").id());
+
+        // Insertions
+        $.find("books").eq(0).append("<book id='9'/>");
+        assertEquals(9, live.find("book").size());
+        assertEquals(asList("x", "2", "3", "4", "9"), live.find("library").eq(0).find("book").ids());
+        assertEquals(asList("1", "3"), live.find("library").eq(1).find("book").ids());
+
+        // Removals
+        $.find("book").eq(1).remove();
+        $.find("library").eq(2).remove();
+        assertEquals(asList("x", "3", "4", "9", "1", "3"), live.find("book").ids());
+        assertEquals($.xpath("//book").ids(), live.find("book").ids());
+
+        // Renames and text changes
+        $.find("author").eq(0).rename("writer");
+        assertEquals(1, live.find("writer").size());
+        $.find("writer").text("<author/>");
+        assertEquals(1, live.find("writer").size());
+        assertEquals($.xpath("//author").size(), live.find("author").size());
+
+        // First matches reuse cached results, if available
+        assertEquals(live.find("book").eq(0), live.findFirst("book"));
+        assertEquals($.find("name").eq(0), live.findFirst("name"));
+        assertEquals($.find("library").find("name").eq(0), live.find("library").eq(0).findFirst("name"));
+
+        // Subtrees modified while detached are rescanned when re-attached
+        Match r = $("<r><a><b/></a></r>").live();
+        assertEquals(0, r.find("x").size());
+        Element a = r.find("a").get(0);
+        a.getParentNode().removeChild(a);
+        a.getFirstChild().appendChild(r.document().createElement("x"));
+        assertEquals(1, $(a).findFirst("x").size());
+        assertEquals(1, $(a).find("x").size());
+        r.get(0).appendChild(a);
+        assertEquals(1, $(r.document()).find("x").size());
+
+        // Deep documents don't overflow the stack
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("<e>");
+        }
+        for (int i = 0; i < 20000; i++) {
+            sb.append("</e>");
+        }
+
+        Document deep = JOOX.builder().parse(new InputSource(new StringReader(sb.toString())));
+        assertEquals(19999, $(deep).live().find("e").size());
+        assertEquals(19999, $(deep).find("e").size());
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        String original = $.toString();
+
+        // Successful batches are kept
+        $.batch(new Batch() {
+            @Override
+            public void batch(Match match) {
+                match.find("book").eq(0).attr("id", "x");
+            }
+        });
+        assertEquals("x", $.find("book").id());
+
+        // Failing batches are rolled back, restoring the original nodes
+        $.find("book").eq(0).attr("id", "1");
+        final Element book = $.find("book").get(1);
+        final Element library = $.find("library").get(2);
+
+        try {
+            $.batch(new Batch() {
+                @Override
+                public void batch(Match match) {
+                    match.find("book").attr("id", "x").attr("lang", "en");
+                    match.find("library").removeAttr("name");
+                    match.find("author").text("x");
+                    match.find("name").content("<x>y</x>");
+                    match.find("books").append("<book id='9'/>");
+                    match.find("book").eq(0).remove();
+                    match.find("library").eq(2).remove();
+                    match.find("authors").rename("writers");
+                    match.find("writers").wrap("wrapper");
+                    match.find("book").eq(0).unwrap();
+                    throw new RuntimeException("rollback");
+                }
+            });
+            fail();
+        }
+        catch (RuntimeException expected) {
+            assertEquals("rollback", expected.getMessage());
+        }
+
+        assertEquals(original, $.toString());
+        assertTrue(book == $.find("book").get(1));
+        assertTrue(library == $.find("library").get(2));
+
+        // Nested batches roll back their own mutations only
+        $.batch(new Batch() {
+            @Override
+            public void batch(Match match) {
+                match.find("book").eq(0).attr("id", "x");
+
+                try {
+                    match.batch(new Batch() {
+                        @Override
+                        public void batch(Match m) {
+                            m.find("book").eq(1).attr("id", "y");
+                            throw new IllegalStateException();
+                        }
+                    });
+                    fail();
+                }
+                catch (IllegalStateException expected) {}
+            }
+        });
+        assertEquals(asList("x", "2", "3"), $.find("book").ids().subList(0, 3));
+
+        // Elements renamed in place are rolled back, too
+        Match n = $(JOOX.builder(true).parse(new ByteArrayInputStream("<a><b id='1'/></a>".getBytes()))).live();
+        assertEquals(1, n.find("b").size());
+
+        try {
+            n.batch(new Batch() {
+                @Override
+                public void batch(Match match) {
+                    match.find("b").rename("c");
+                    assertEquals(0, match.find("b").size());
+                    assertEquals(1, match.find("c").size());
+                    throw new RuntimeException();
+                }
+            });
+            fail();
+        }
+        catch (RuntimeException expected) {}
+
+        assertEquals(1, n.find("b").size());
+        assertEquals(0, n.find("c").size());
+        assertEquals("<a><b id=\"1\"/></a>", n.toString());
+
+        // Replacing the document element is rolled back, too
+        Match r = $("<r><a/></r>");
+        final Element root = r.get(0);
+
+        try {
+            r.batch(new Batch() {
+                @Override
+                public void batch(Match match) {
+                    match.wrap("c");
+                    assertEquals("c", $(match.document()).tag());
+                    throw new IllegalStateException("rollback");
+                }
+            });
+            fail();
+        }
+        catch (IllegalStateException expected) {
+            assertEquals("rollback", expected.getMessage());
+        }
+
+        assertTrue(root == r.document().getDocumentElement());
+        assertEquals("<r><a/></r>", $(r.document()).toString());
+    }
+
+    @Test
+    public void testTree() throws Exception {
+        Tree tree =
+            tree("books",
+                tree("book",
+                    tree("name", "The Da Vinci Code"),
+                    tree("authors",
+                        tree("author", "Dan Brown"))).attr("id", "5"),
+                tree("book").attr("id", "6").attr("lang", "<en>"));
+
+        Match match =
+            $("books",
+                $("book",
+                    $("name", "The Da Vinci Code"),
+                    $("authors",
+                        $("author", "Dan Brown"))).attr("id", "5"),
+                $("book").attr("id", "6").attr("lang", "<en>"));
+
+        assertEquals(match.toString(), tree.build().toString());
+        assertEquals(match.toString(), tree.toString());
+
+        // Trees are created directly in a given document
+        Element book = tree.build(xmlExampleDocument);
+        assertEquals(xmlExampleDocument, book.getOwnerDocument());
+        assertEquals(null, book.getParentNode());
+        assertEquals(asList("5", "6"), $.find("books").eq(0).append(book).children().children("book").ids());
+
+        // Text content is never parsed
+        assertEquals("<a>&lt;b/&gt;</a>", tree("a", "<b/>").toString());
+        assertEquals("<b/>", $(tree("a", "<b/>").build(xmlExampleDocument)).text());
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        StringWriter writer = new StringWriter();
+        Cursor cursor = JOOX.cursor(writer).start("report").attr("date", "2012-01-01");
+
+        for (int i = 1; i <= 3; i++) {
+            cursor.start("row").attr("id", "" + i).text("<" + i + ">").end();
+        }
+
+        cursor.append(tree("summary", "3 rows"))
+              .append($.find("director"))
+              .start("footer")
+              .close();
+
+        assertEquals(
+            "<report date=\"2012-01-01\">" +
+            "<row id=\"1\">&lt;1&gt;</row><row id=\"2\">&lt;2&gt;</row><row id=\"3\">&lt;3&gt;</row>" +
+            "<summary>3 rows</summary><director>Sergio Leone</director><footer></footer>" +
+            "</report>",
+            writer.toString());
+
+        // Content can only be added in document order
+        cursor = JOOX.cursor(new StringWriter()).start("a").text("x");
+
+        try {
+            cursor.attr("id", "1");
+            fail();
+        }
+        catch (IllegalStateException expected) {}
+
+        try {
+            cursor.end().end();
+            fail();
+        }
+        catch (IllegalStateException expected) {}
+
+        // Streams contain UTF-8 encoded documents
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JOOX.cursor(stream).start("a").text("\u00e4").close();
+        assertEquals("\u00e4", $(new ByteArrayInputStream(stream.toByteArray())).text());
+    }
+
     @Test
     public void testXPath() throws Exception {
         assertEquals("/document[1]", $.xpath());
@@ -1767,6 +2719,77 @@ public class JOOXTest {
         assertEquals(0, match.unmarshal(Customer.class, 1, 2, 3).size());
         assertEquals(getCustomer(), match.unmarshal(Customer.class).get(0));
         assertEquals(getCustomer(), match.unmarshal(Customer.class, 0).get(0));
+
+        // Pooled marshallers and unmarshallers work with more concurrent
+        // borrowers than the pool can hold, and thereafter
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        try {
+            for (int t = 0; t < 32; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+
+                        for (int i = 0; i < 20; i++) {
+                            assertEquals(getCustomer(), $(getCustomer()).unmarshalOne(Customer.class));
+                        }
+
+                        return null;
+                    }
+                }));
+            }
+
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < 40; i++) {
+            assertEquals(getCustomer(), $(getCustomer()).unmarshalOne(Customer.class));
+        }
+    }
+
+    @Test
+    public void testUnmarshalParallel() throws Exception {
+        Match match = $("customers");
+        for (int i = 0; i < 100; i++) {
+            match.append($("customer", $("age", "" + i), $("name", "Lukas")).attr("id", "" + i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Customer> customers = match.find("customer").unmarshal(Customer.class, executor);
+
+            assertEquals(100, customers.size());
+            assertEquals(match.find("customer").unmarshal(Customer.class), customers);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, customers.get(i).getId());
+            }
+
+            assertEquals(0, match.find("abc").unmarshal(Customer.class, executor).size());
+
+            // Parsed documents may be expanded lazily by the DOM implementation
+            Match parsed = $(JOOX.builder().parse(new InputSource(new StringReader(match.toString()))));
+            assertEquals(customers, parsed.find("customer").unmarshal(Customer.class, executor));
+            assertEquals(match.toString(), parsed.toString());
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        Iterator<Customer> it = match.find("customer").unmarshalIterator(Customer.class);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(it.hasNext());
+            assertEquals(i, it.next().getAge());
+        }
+        assertFalse(it.hasNext());
     }
 
     @Test
@@ -1780,6 +2803,16 @@ public class JOOXTest {
         assertEquals(2, $.find("name, actor").matchText(".*in.*", true).size());
         assertEquals($.find("name, actor").size() - 2,
             $.find("name, actor").matchText(".*in.*", false).size());
+
+        // Text content spread over several text nodes
+        Match mixed = $("<a>ab<b>c<![CDATA[d]]><c/></b><!-- x -->e</a>");
+        assertEquals(1, mixed.matchText("abcde").size());
+        assertEquals(1, mixed.matchText("a(bc)d.").size());
+        assertEquals(1, mixed.matchText("[a-e]+").size());
+        assertEquals(0, mixed.matchText("abcd").size());
+        assertEquals(0, mixed.matchText(".*x.*").size());
+        assertEquals(asList("b"), mixed.find().matchText("cd").tags());
+        assertEquals(asList("c"), mixed.find().matchText("^$").tags());
     }
 
     @Test
@@ -1825,6 +2858,35 @@ public class JOOXTest {
             $.find("record2").attr("sql-time", java.sql.Time.class));
     }
 
+    @Test
+    public void testDatesISO() throws Exception {
+        DatatypeFactory factory = DatatypeFactory.newInstance();
+
+        for (String value : asList(
+                "1981-07-10",
+                "1981-07-10Z",
+                "1981-07-10+01:00",
+                "1981-07-10T09:15:37",
+                "1981-07-10T09:15:37.5",
+                "1981-07-10T09:15:37.1239Z",
+                "1981-07-10T09:15:37+02:00",
+                "1981-07-10T09:15:37-05:30",
+                "2000-02-29T23:59:59",
+                "09:15:37",
+                "09:15:37Z",
+                "09:15:37.25",
+                "1600-01-01T00:00:00Z",
+                "9999-12-31T23:59:59.999Z")) {
+
+            assertEquals(value,
+                factory.newXMLGregorianCalendar(value).toGregorianCalendar().getTime(),
+                $("<date>" + value + "</date>").text(java.util.Date.class));
+        }
+
+        assertEquals(java.sql.Timestamp.valueOf("1981-07-10 09:15:37.123"),
+            $("<date>1981-07-10 09:15:37.123</date>").text(java.sql.Timestamp.class));
+    }
+
     private Customer getCustomer() {
         Customer c = new Customer();
 